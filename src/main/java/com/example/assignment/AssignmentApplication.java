@@ -1,13 +1,16 @@
 package com.example.assignment;
 
+import com.example.assignment.debt.dependency.PaymentSourceProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableFeignClients
 @EnableScheduling
+@EnableConfigurationProperties(PaymentSourceProperties.class)
 public class AssignmentApplication {
 
 	public static void main(String[] args) {
@@ -1,24 +1,55 @@
 package com.example.assignment.debt;
 
-import com.example.assignment.debt.dependency.PaymentServiceClient;
+import com.example.assignment.debt.dependency.PaymentDataSource;
+import com.example.assignment.debt.dependency.PaymentDataSourceConfiguration;
+import com.example.assignment.debt.dependency.PaymentServiceCallStats;
 import com.example.assignment.debt.dependency.PaymentServiceClientException;
+import com.example.assignment.debt.dependency.PaymentSource;
+import com.example.assignment.debt.dependency.PaymentSourceRegistry;
 import com.example.assignment.debt.dependency.model.InstallmentFrequency;
 import com.example.assignment.debt.dependency.model.Payment;
 import com.example.assignment.debt.dependency.model.PaymentPlan;
+import com.example.assignment.debt.jfr.JoinBuildEvent;
+import com.example.assignment.debt.jfr.OutputEvent;
+import com.example.assignment.debt.jfr.PaymentServiceCallEvent;
+import com.example.assignment.debt.jfr.RefreshEvent;
+import com.example.assignment.debt.jfr.RefreshRecorder;
+import com.example.assignment.debt.jfr.SummaryLoopEvent;
+import com.example.assignment.debt.join.ExternalPaymentJoin;
+import com.example.assignment.debt.join.PaymentTotal;
 import com.example.assignment.debt.model.Debt;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Sreeni Sannuthi
@@ -26,12 +57,65 @@ import java.util.Objects;
 @Service
 public class DebtService {
 
-    private final PaymentServiceClient paymentServiceClient;
+    private static final Logger LOGGER = LoggerFactory.getLogger(DebtService.class);
+
+    /**
+     * Source name of the {@code paymentService.*} data source in refresh events.
+     */
+    private static final String DEFAULT_SOURCE = "default";
+
+    /**
+     * Data source used when no payment source is configured, the client bound to {@code paymentService.url} or the
+     * exports selected by {@code paymentService.type}, see {@link PaymentDataSourceConfiguration}.
+     */
+    private final PaymentDataSource paymentDataSource;
+
+    private final PaymentSourceRegistry paymentSourceRegistry;
+
+    private final RefreshRecorder refreshRecorder;
 
     private final ObjectMapper mapper;
 
-    public DebtService(PaymentServiceClient paymentServiceClient) {
-        this.paymentServiceClient = paymentServiceClient;
+    /**
+     * Time of the last successful refresh of every configured source, by source name.
+     */
+    private final Map<String, Instant> sourceRefreshTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Last refresh started for every configured source, by source name. A source still refreshing when the next
+     * refresh is due is not refreshed again until it completes.
+     */
+    private final Map<String, CompletableFuture<List<Debt>>> sourceRefreshes = new ConcurrentHashMap<>();
+
+    /**
+     * Id of the last refresh, carried by the refresh flight recorder events.
+     */
+    private final AtomicLong refreshIds = new AtomicLong();
+
+    /**
+     * When enabled, payments are streamed from their source into an external sort-merge join
+     * ({@link ExternalPaymentJoin}) instead of being fetched as a list and joined in an in-memory map, for payment
+     * histories larger than the heap.
+     */
+    @Value("${debtService.externalJoin.enabled:false}")
+    private boolean externalJoinEnabled;
+    @Value("${debtService.externalJoin.memoryBudgetBytes:67108864}")
+    private long externalJoinMemoryBudgetBytes;
+    @Value("${debtService.externalJoin.tempDirectory:}")
+    private String externalJoinTempDirectory;
+
+    /**
+     * How long a refresh waits for the configured payment sources. Sources that take longer are left out of the
+     * refresh and reported as stale, and their own refresh carries on in the background.
+     */
+    @Value("${debtService.sourceRefreshTimeoutMillis:60000}")
+    private long sourceRefreshTimeoutMillis;
+
+    public DebtService(PaymentDataSource paymentDataSource, PaymentSourceRegistry paymentSourceRegistry,
+                       RefreshRecorder refreshRecorder) {
+        this.paymentDataSource = paymentDataSource;
+        this.paymentSourceRegistry = paymentSourceRegistry;
+        this.refreshRecorder = refreshRecorder;
         this.mapper = new ObjectMapper();
     }
 
@@ -39,6 +123,10 @@ public class DebtService {
      * Prints and fetches debts information as expected by calling TrueAccord endpoints for the data.
      * Logic written according to the Problem statement given in
      * https://gist.github.com/jeffling/2dd661ff8398726883cff09839dc316c
+     * <p>
+     * When several payment sources are configured, they are all refreshed concurrently and the debts of every
+     * source that completed within {@code debtService.sourceRefreshTimeoutMillis} are returned in configuration
+     * order.
      *
      * @return
      * @throws PaymentServiceClientException
@@ -46,16 +134,227 @@ public class DebtService {
      */
     @Scheduled(fixedRate = 300_000) //Runs every 5min
     public List<Debt> getAllDebts() throws PaymentServiceClientException, JsonProcessingException {
+        long refreshId = refreshIds.incrementAndGet();
+        Instant startTime = Instant.now();
+        RefreshEvent refreshEvent = new RefreshEvent();
+        refreshEvent.begin();
+        List<PaymentSource> paymentSources = paymentSourceRegistry.getSources();
+        List<Debt> debts = null;
+        try {
+            if (!CollectionUtils.isEmpty(paymentSources)) {
+                debts = getAllDebts(refreshId, paymentSources);
+            } else {
+                List<com.example.assignment.debt.dependency.model.Debt> paymentServiceDebts =
+                        fetch(refreshId, DEFAULT_SOURCE, "debts", paymentDataSource::getAllDebts);
+                List<PaymentPlan> paymentPlans =
+                        fetch(refreshId, DEFAULT_SOURCE, "payment_plans", paymentDataSource::getAllPaymentPlans);
+                try (Stream<Payment> payments = fetchPayments(refreshId, DEFAULT_SOURCE, paymentDataSource)) {
+                    debts = summarizeDebts(refreshId, DEFAULT_SOURCE, paymentServiceDebts, paymentPlans, payments);
+                }
+            }
+            return debts;
+        } finally {
+            refreshEvent.setRefreshId(refreshId);
+            refreshEvent.setSources(CollectionUtils.isEmpty(paymentSources) ? 1 : paymentSources.size());
+            refreshEvent.setDebts(debts == null ? 0 : debts.size());
+            refreshEvent.commit();
+            refreshRecorder.refreshCompleted(refreshId, startTime, Duration.between(startTime, Instant.now()));
+        }
+    }
 
-        List<com.example.assignment.debt.dependency.model.Debt> paymentServiceDebts =
-                paymentServiceClient.getAllDebts();
-        List<PaymentPlan> paymentPlans = paymentServiceClient.getAllPaymentPlans();
-        List<Payment> payments = paymentServiceClient.getAllPayments();
+    /**
+     * @return time of the last successful refresh of every configured payment source, by source name.
+     * Sources that never refreshed successfully are absent.
+     */
+    public Map<String, Instant> getSourceRefreshTimes() {
+        return Collections.unmodifiableMap(sourceRefreshTimes);
+    }
+
+    /**
+     * Refreshes every source on its own bulkhead. The debts of a source are printed as soon as that source
+     * completes, so a slow source does not hold back the summaries of the others, and a failing source only
+     * leaves its own debts out of the result. Sources still refreshing at the deadline are left out as well, so
+     * that a slow source does not delay the next scheduled refresh of the others.
+     * @param refreshId
+     * @param paymentSources
+     * @return
+     */
+    private List<Debt> getAllDebts(long refreshId, List<PaymentSource> paymentSources) {
+        List<CompletableFuture<List<Debt>>> sourceDebtsFutures = new ArrayList<>();
+        for (PaymentSource paymentSource : paymentSources) {
+            sourceDebtsFutures.add(sourceRefreshes.compute(paymentSource.getName(), (source, previousRefresh) -> {
+                if (previousRefresh == null || previousRefresh.isDone()) {
+                    return refreshSource(refreshId, paymentSource);
+                }
+                LOGGER.warn("Payment source {} is still refreshing, not refreshing it again", source);
+                return previousRefresh;
+            }));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sourceRefreshTimeoutMillis);
+        List<Debt> debts = new ArrayList<>();
+        List<String> lateSources = new ArrayList<>();
+        for (int i = 0; i < paymentSources.size(); i++) {
+            String source = paymentSources.get(i).getName();
+            try {
+                debts.addAll(sourceDebtsFutures.get(i).get(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                lateSources.add(source);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lateSources.add(source);
+            } catch (ExecutionException e) {
+                // Not expected, refreshSource turns failures into an empty list of debts
+                LOGGER.error("Refresh of payment source {} failed", source, e.getCause());
+            }
+        }
+        logSourceFreshness(paymentSources, lateSources);
+        return debts;
+    }
 
+    private CompletableFuture<List<Debt>> refreshSource(long refreshId, PaymentSource paymentSource) {
+        String source = paymentSource.getName();
+        PaymentDataSource dataSource = paymentSource.getDataSource();
+        CompletableFuture<List<com.example.assignment.debt.dependency.model.Debt>> paymentServiceDebtsFuture =
+                CompletableFuture.supplyAsync(() -> call(() -> fetch(refreshId, source, "debts",
+                        dataSource::getAllDebts)), paymentSource.getBulkhead());
+        CompletableFuture<List<PaymentPlan>> paymentPlansFuture =
+                CompletableFuture.supplyAsync(() -> call(() -> fetch(refreshId, source, "payment_plans",
+                        dataSource::getAllPaymentPlans)), paymentSource.getBulkhead());
+        CompletableFuture<Stream<Payment>> paymentsFuture =
+                CompletableFuture.supplyAsync(() -> call(() -> fetchPayments(refreshId, source, dataSource)),
+                        paymentSource.getBulkhead());
+        return CompletableFuture.allOf(paymentServiceDebtsFuture, paymentPlansFuture, paymentsFuture)
+                .thenApply(ignored -> {
+                    try (Stream<Payment> payments = paymentsFuture.join()) {
+                        return summarizeDebts(refreshId, source, paymentServiceDebtsFuture.join(),
+                                paymentPlansFuture.join(), payments);
+                    } catch (JsonProcessingException e) {
+                        throw new CompletionException(e);
+                    }
+                })
+                .handle((debts, failure) -> {
+                    if (failure != null) {
+                        // Releases the payments stream when another call of the source failed before it was read
+                        paymentsFuture.thenAccept(Stream::close);
+                        LOGGER.error("Refresh of payment source {} failed", source,
+                                failure instanceof CompletionException ? failure.getCause() : failure);
+                        return Collections.<Debt>emptyList();
+                    }
+                    sourceRefreshTimes.put(source, Instant.now());
+                    return debts;
+                });
+    }
+
+    private void logSourceFreshness(List<PaymentSource> paymentSources, List<String> lateSources) {
+        Instant now = Instant.now();
+        for (PaymentSource paymentSource : paymentSources) {
+            Instant refreshTime = sourceRefreshTimes.get(paymentSource.getName());
+            if (lateSources.contains(paymentSource.getName())) {
+                LOGGER.warn("Payment source {} did not refresh within {}ms and is stale, last refreshed at {}",
+                        paymentSource.getName(), sourceRefreshTimeoutMillis, refreshTime);
+            } else if (refreshTime == null) {
+                LOGGER.warn("Payment source {} has never been refreshed", paymentSource.getName());
+            } else {
+                LOGGER.info("Payment source {} last refreshed at {} ({}s ago)", paymentSource.getName(),
+                        refreshTime, Duration.between(refreshTime, now).getSeconds());
+            }
+        }
+    }
+
+    private static <T> T call(PaymentServiceCall<T> paymentServiceCall) {
+        try {
+            return paymentServiceCall.call();
+        } catch (PaymentServiceClientException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Fetches the payments of a source. When the external join is enabled they are streamed, and only decoded
+     * while the join reads them, so that they are never all in memory.
+     * @param refreshId
+     * @param source
+     * @param dataSource
+     * @return
+     * @throws PaymentServiceClientException
+     */
+    private Stream<Payment> fetchPayments(long refreshId, String source, PaymentDataSource dataSource)
+            throws PaymentServiceClientException {
+        if (externalJoinEnabled) {
+            Stream<Payment> payments = fetch(refreshId, source, "payments", dataSource::streamAllPayments);
+            return payments == null ? Stream.empty() : payments;
+        }
+        List<Payment> payments = fetch(refreshId, source, "payments", dataSource::getAllPayments);
+        return payments == null ? Stream.empty() : payments.stream();
+    }
+
+    /**
+     * Calls a payment source endpoint, recording the call with its response size and rows. The rows of a
+     * streamed response are only counted by the join reading them.
+     * @param refreshId
+     * @param source
+     * @param endpoint
+     * @param paymentServiceCall
+     * @return
+     * @throws PaymentServiceClientException
+     */
+    private static <T> T fetch(long refreshId, String source, String endpoint,
+                               PaymentServiceCall<T> paymentServiceCall) throws PaymentServiceClientException {
+        PaymentServiceCallEvent event = new PaymentServiceCallEvent();
+        event.start(refreshId, source);
+        PaymentServiceCallStats stats = PaymentServiceCallStats.start();
+        T rows = null;
+        try {
+            rows = paymentServiceCall.call();
+            return rows;
+        } finally {
+            PaymentServiceCallStats.finish();
+            event.setEndpoint(endpoint);
+            event.setBytes(stats.getBytes());
+            event.setCacheHit(stats.isCacheHit());
+            event.setStreamed(rows instanceof Stream);
+            event.setRows(rows instanceof Collection ? ((Collection<?>) rows).size() : 0);
+            event.finish();
+        }
+    }
+
+    /**
+     * Builds, prints and returns the debts summary from the data of a single payment source.
+     * @param refreshId
+     * @param source
+     * @param paymentServiceDebts
+     * @param paymentPlans
+     * @param payments
+     * @return
+     * @throws JsonProcessingException
+     */
+    private List<Debt> summarizeDebts(long refreshId, String source,
+                                      List<com.example.assignment.debt.dependency.model.Debt> paymentServiceDebts,
+                                      List<PaymentPlan> paymentPlans,
+                                      Stream<Payment> payments) throws JsonProcessingException {
+        JoinBuildEvent debtIdPaymentPlanJoinEvent = new JoinBuildEvent();
+        debtIdPaymentPlanJoinEvent.start(refreshId, source);
         Map<Integer, PaymentPlan> debtIdPaymentPlanMap =
                 buildDebtIdPaymentPlanMap(paymentServiceDebts, paymentPlans);
-        Map<Integer, List<Payment>> paymentPlanIdPaymentsMap = buildPaymentPlanIdPaymentsMap(paymentPlans, payments);
+        debtIdPaymentPlanJoinEvent.setJoin("debtIdPaymentPlan");
+        debtIdPaymentPlanJoinEvent.setInputRows(size(paymentServiceDebts) + size(paymentPlans));
+        debtIdPaymentPlanJoinEvent.setEntries(debtIdPaymentPlanMap.size());
+        debtIdPaymentPlanJoinEvent.finish();
 
+        JoinBuildEvent paymentPlanIdPaymentTotalJoinEvent = new JoinBuildEvent();
+        paymentPlanIdPaymentTotalJoinEvent.start(refreshId, source);
+        AtomicInteger paymentRows = new AtomicInteger();
+        Map<Integer, PaymentTotal> paymentPlanIdPaymentTotalMap = buildPaymentPlanIdPaymentTotalMap(paymentPlans,
+                payments.peek(payment -> paymentRows.incrementAndGet()));
+        paymentPlanIdPaymentTotalJoinEvent.setJoin("paymentPlanIdPaymentTotal");
+        paymentPlanIdPaymentTotalJoinEvent.setExternal(externalJoinEnabled);
+        paymentPlanIdPaymentTotalJoinEvent.setInputRows(size(paymentPlans) + paymentRows.get());
+        paymentPlanIdPaymentTotalJoinEvent.setEntries(paymentPlanIdPaymentTotalMap.size());
+        paymentPlanIdPaymentTotalJoinEvent.finish();
+
+        SummaryLoopEvent summaryLoopEvent = new SummaryLoopEvent();
+        summaryLoopEvent.start(refreshId, source);
         List<Debt> debts = new ArrayList<>();
         if (paymentServiceDebts != null) {
             for (com.example.assignment.debt.dependency.model.Debt paymentServiceDebt : paymentServiceDebts) {
@@ -64,22 +363,21 @@ public class DebtService {
                 BigDecimal remainingAmount = paymentServiceDebt.getAmount();
                 String nextPaymentDueDate = null;
                 if (debtAssociatedPaymentPlan != null) {
-                    List<Payment> paymentPlanAssociatedPayments =
-                            paymentPlanIdPaymentsMap.get(debtAssociatedPaymentPlan.getId());
+                    PaymentTotal paymentPlanPaymentTotal =
+                            paymentPlanIdPaymentTotalMap.get(debtAssociatedPaymentPlan.getId());
                     // If no payments done till now, remainingAmount is paymentPlan's amountToPay
                     // otherwise paymentPlan's amountToPay - paid amount
-                    remainingAmount = paymentPlanAssociatedPayments == null ?
+                    remainingAmount = paymentPlanPaymentTotal == null ?
                             debtAssociatedPaymentPlan.getAmountToPay()
                             : debtAssociatedPaymentPlan.getAmountToPay()
-                            .subtract(paymentPlanAssociatedPayments.stream()
-                                    .map(Payment::getAmount).reduce(BigDecimal::add).get());
+                            .subtract(paymentPlanPaymentTotal.getPaidAmount());
                     if (BigDecimal.ZERO.compareTo(remainingAmount) < 0) {
                         isInPaymentPlan = true;
                         // If no payments done till now, paymentPlan's start-date is the next nextPaymentDueDate
                         // otherwise recent payment's date + installment-frequency duration
-                        LocalDate lastPaymentDate = paymentPlanAssociatedPayments == null ?
+                        LocalDate lastPaymentDate = paymentPlanPaymentTotal == null ?
                                 debtAssociatedPaymentPlan.getStartDate() :
-                                paymentPlanAssociatedPayments.stream().map(Payment::getDate).max(LocalDate::compareTo).get();
+                                paymentPlanPaymentTotal.getLastPaymentDate();
                         if (InstallmentFrequency.WEEKLY.toString()
                                 .equals(debtAssociatedPaymentPlan.getInstallmentFrequency())) {
                             nextPaymentDueDate = lastPaymentDate.plusDays(7).toString();
@@ -96,13 +394,30 @@ public class DebtService {
                         .remainingAmount(remainingAmount)
                         .nextPaymentDueDate(nextPaymentDueDate)
                         .build();
-                System.out.println(mapper.writer().writeValueAsString(debt));
                 debts.add(debt);
             }
         }
+        summaryLoopEvent.setDebts(debts.size());
+        summaryLoopEvent.finish();
+
+        OutputEvent outputEvent = new OutputEvent();
+        outputEvent.start(refreshId, source);
+        long outputBytes = 0;
+        for (Debt debt : debts) {
+            String output = mapper.writer().writeValueAsString(debt);
+            System.out.println(output);
+            outputBytes += output.length() + 1;
+        }
+        outputEvent.setDebts(debts.size());
+        outputEvent.setBytes(outputBytes);
+        outputEvent.finish();
         return debts;
     }
 
+    private static int size(List<?> rows) {
+        return rows == null ? 0 : rows.size();
+    }
+
     /**
      * Helper method to build a map with key as debt id and value as the paymentPlan for that debt.
      * @param debts
@@ -127,6 +442,32 @@ public class DebtService {
         return debtIdPaymentPlanMap;
     }
 
+    /**
+     * Helper method to build a map with key as paymentPlan id and value as the total of the payments made for that
+     * paymentPlan, either in memory or with the external sort-merge join when it is enabled, which reads the payments
+     * one at a time. Both produce the same totals.
+     * @param paymentPlans
+     * @param payments
+     * @return
+     */
+    private Map<Integer, PaymentTotal> buildPaymentPlanIdPaymentTotalMap(List<PaymentPlan> paymentPlans,
+                                                                         Stream<Payment> payments) {
+        if (externalJoinEnabled) {
+            ExternalPaymentJoin externalPaymentJoin = new ExternalPaymentJoin(externalJoinMemoryBudgetBytes,
+                    StringUtils.hasText(externalJoinTempDirectory) ? Paths.get(externalJoinTempDirectory) : null);
+            return externalPaymentJoin.join(paymentPlans, payments::iterator);
+        }
+        Map<Integer, PaymentTotal> paymentPlanIdPaymentTotalMap = new HashMap<>();
+        Map<Integer, List<Payment>> paymentPlanIdPaymentsMap =
+                buildPaymentPlanIdPaymentsMap(paymentPlans, payments.collect(Collectors.toList()));
+        paymentPlanIdPaymentsMap.forEach((paymentPlanId, paymentPlanAssociatedPayments) ->
+                paymentPlanIdPaymentTotalMap.put(paymentPlanId, new PaymentTotal(
+                        paymentPlanAssociatedPayments.stream().map(Payment::getAmount).reduce(BigDecimal::add).get(),
+                        paymentPlanAssociatedPayments.stream().map(Payment::getDate).filter(Objects::nonNull)
+                                .max(LocalDate::compareTo).orElse(null))));
+        return paymentPlanIdPaymentTotalMap;
+    }
+
     /**
      * Helper method to build a map with key as paymentPlan id and value as the list of payments made for that
      * paymentPlan.
@@ -152,4 +493,9 @@ public class DebtService {
         }
         return paymentPlanIdPaymentsMap;
     }
+
+    @FunctionalInterface
+    private interface PaymentServiceCall<T> {
+        T call() throws PaymentServiceClientException;
+    }
 }
@@ -0,0 +1,208 @@
+package com.example.assignment.debt.dependency;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Feign {@link Client} making conditional GETs against the PaymentService.
+ * <p>
+ * The validators of the last response for a url are sent as {@code If-None-Match}/{@code If-Modified-Since}.
+ * A {@code 304 Not Modified} is answered from the {@link HttpResponseCache} as a {@code 200} carrying the cached
+ * body, so the rest of Feign sees a regular successful response, and fresh responses with validators are stored
+ * in the cache. When there is no cached body to answer a {@code 304} with, because the entry could not be loaded
+ * or its body is gone, the request is repeated without validators in the same call, so a {@code 304} only reaches
+ * the error decoder when a server answers one to an unconditional GET. {@link #CACHE_HEADER} tells whether a
+ * response was served from the cache.
+ *
+ * @author Sreeni Sannuthi
+ */
+public class CachingClient implements Client {
+
+    public static final String CACHE_HEADER = "X-Payment-Service-Cache";
+    public static final String CACHE_HIT = "HIT";
+    public static final String CACHE_MISS = "MISS";
+
+    private static final int OK = 200;
+    private static final int NOT_MODIFIED = 304;
+
+    private final Client delegate;
+
+    private final HttpResponseCache cache;
+
+    private final long maxBufferedBodyBytes;
+
+    /**
+     * @param delegate
+     * @param cache
+     * @param maxBufferedBodyBytes largest response body held in memory; larger ones are streamed from the cache
+     */
+    public CachingClient(Client delegate, HttpResponseCache cache, long maxBufferedBodyBytes) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.maxBufferedBodyBytes = maxBufferedBodyBytes;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        if (request.httpMethod() != Request.HttpMethod.GET) {
+            return delegate.execute(request, options);
+        }
+        String url = request.url();
+        HttpResponseCache.Entry entry = cache.get(url);
+        Response response = delegate.execute(entry == null ? request : conditionalRequest(request, entry), options);
+        if (response.status() == NOT_MODIFIED) {
+            Util.ensureClosed(response.body());
+            if (entry != null) {
+                Map<String, Collection<String>> headers = headersOf(response);
+                // A 304 need not repeat the validators and representation headers, so restore them from the cache
+                putIfNotNull(headers, "ETag", entry.getEtag());
+                putIfNotNull(headers, "Last-Modified", entry.getLastModified());
+                putIfNotNull(headers, "Content-Type", entry.getContentType());
+                Response cachedResponse = withCachedBody(response, OK, "OK", headers, CACHE_HIT);
+                if (cachedResponse != null) {
+                    return cachedResponse;
+                }
+                // The cached body was lost, e.g. to a temp directory cleaner
+                cache.evict(url);
+            }
+            // Nothing to answer the 304 with, so fetch the response again right away
+            response = delegate.execute(unconditionalRequest(request), options);
+        }
+        if (response.status() == OK) {
+            String etag = firstOrNull(response.headers(), "ETag");
+            String lastModified = firstOrNull(response.headers(), "Last-Modified");
+            if (etag != null || lastModified != null) {
+                return cache(response, new HttpResponseCache.Entry(etag, lastModified,
+                        firstOrNull(response.headers(), "Content-Type")));
+            }
+        }
+        if (response.body() != null && response.body().length() != null) {
+            PaymentServiceCallStats.recordResponse(response.body().length(), false);
+        }
+        return response;
+    }
+
+    /**
+     * Stores a fresh response in the cache. Bodies of at most {@code maxBufferedBodyBytes} are read into memory;
+     * larger ones, and ones of unknown size, are written to the cache file as they are read and served from it.
+     */
+    private Response cache(Response response, HttpResponseCache.Entry entry) throws IOException {
+        String url = response.request().url();
+        Integer length = response.body() == null ? Integer.valueOf(0) : response.body().length();
+        if (length != null && length <= maxBufferedBodyBytes) {
+            byte[] body = response.body() == null ? new byte[0] : Util.toByteArray(response.body().asInputStream());
+            cache.put(url, entry, body);
+            PaymentServiceCallStats.recordResponse(body.length, false);
+            return Response.builder()
+                    .status(response.status())
+                    .reason(response.reason())
+                    .headers(withCacheHeaders(headersOf(response), body.length, CACHE_MISS))
+                    .request(response.request())
+                    .body(body)
+                    .build();
+        }
+        try (InputStream body = response.body().asInputStream()) {
+            cache.put(url, entry, body);
+        }
+        Response cachedResponse = withCachedBody(response, response.status(), response.reason(),
+                headersOf(response), CACHE_MISS);
+        if (cachedResponse == null) {
+            throw new IOException("Could not read back the cached response body for " + url);
+        }
+        return cachedResponse;
+    }
+
+    private Request conditionalRequest(Request request, HttpResponseCache.Entry entry) {
+        Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(request.headers());
+        if (entry.getEtag() != null) {
+            headers.put("If-None-Match", Collections.singletonList(entry.getEtag()));
+        }
+        if (entry.getLastModified() != null) {
+            headers.put("If-Modified-Since", Collections.singletonList(entry.getLastModified()));
+        }
+        return Request.create(request.httpMethod(), request.url(), headers, request.body(), request.charset(),
+                request.requestTemplate());
+    }
+
+    private Request unconditionalRequest(Request request) {
+        Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(request.headers());
+        headers.remove("If-None-Match");
+        headers.remove("If-Modified-Since");
+        return Request.create(request.httpMethod(), request.url(), headers, request.body(), request.charset(),
+                request.requestTemplate());
+    }
+
+    /**
+     * Builds a response carrying the cached body for the url of the given response, read into memory when it is
+     * at most {@code maxBufferedBodyBytes} and streamed from the cache file otherwise.
+     * @return the response, or null when the cached body is no longer on disk.
+     */
+    private Response withCachedBody(Response response, int status, String reason,
+                                    Map<String, Collection<String>> headers, String cacheStatus) {
+        String url = response.request().url();
+        long size = cache.getBodySize(url);
+        if (size < 0) {
+            return null;
+        }
+        Response.Builder builder = Response.builder()
+                .status(status)
+                .reason(reason)
+                .request(response.request());
+        if (size <= maxBufferedBodyBytes) {
+            byte[] body = cache.getBody(url);
+            if (body == null) {
+                return null;
+            }
+            size = body.length;
+            builder.body(body);
+        } else {
+            InputStream body = cache.openBody(url);
+            if (body == null) {
+                return null;
+            }
+            builder.body(body, size <= Integer.MAX_VALUE ? (int) size : null);
+        }
+        PaymentServiceCallStats.recordResponse(size, CACHE_HIT.equals(cacheStatus));
+        return builder.headers(withCacheHeaders(headers, size, cacheStatus)).build();
+    }
+
+    private Map<String, Collection<String>> withCacheHeaders(Map<String, Collection<String>> headers, long size,
+                                                            String cacheStatus) {
+        headers.remove("Transfer-Encoding");
+        headers.put("Content-Length", Collections.singletonList(String.valueOf(size)));
+        headers.put(CACHE_HEADER, Collections.singletonList(cacheStatus));
+        return headers;
+    }
+
+    private static Map<String, Collection<String>> headersOf(Response response) {
+        Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(response.headers());
+        return headers;
+    }
+
+    private static void putIfNotNull(Map<String, Collection<String>> headers, String name, String value) {
+        if (value != null) {
+            headers.put(name, Collections.singletonList(value));
+        }
+    }
+
+    static String firstOrNull(Map<String, Collection<String>> headers, String name) {
+        for (Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+                return header.getValue().iterator().next();
+            }
+        }
+        return null;
+    }
+}
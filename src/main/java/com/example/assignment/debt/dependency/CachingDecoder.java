@@ -0,0 +1,54 @@
+package com.example.assignment.debt.dependency;
+
+import feign.Response;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Feign {@link Decoder} reusing the result decoded earlier for a response with the same validator, so that a
+ * response served by {@link CachingClient} after a {@code 304 Not Modified} is not parsed again.
+ * <p>
+ * Cached lists are shared between refreshes and are therefore returned unmodifiable. Streams are read only once
+ * and are never reused, and neither are responses too large for {@link CachingClient} to buffer, whose bodies
+ * are streamed from the cache file.
+ *
+ * @author Sreeni Sannuthi
+ */
+public class CachingDecoder implements Decoder {
+
+    private final Decoder delegate;
+
+    private final HttpResponseCache cache;
+
+    public CachingDecoder(Decoder delegate, HttpResponseCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        String validator = CachingClient.firstOrNull(response.headers(), "ETag");
+        if (validator == null) {
+            validator = CachingClient.firstOrNull(response.headers(), "Last-Modified");
+        }
+        if (validator == null || JsonStreamDecoder.isStream(type) || response.body() == null
+                || !response.body().isRepeatable()
+                || CachingClient.firstOrNull(response.headers(), CachingClient.CACHE_HEADER) == null) {
+            return delegate.decode(response, type);
+        }
+        String url = response.request().url();
+        Object decoded = cache.getDecoded(url, validator, type);
+        if (decoded == null) {
+            decoded = delegate.decode(response, type);
+            if (decoded instanceof List) {
+                decoded = Collections.unmodifiableList((List<?>) decoded);
+            }
+            cache.putDecoded(url, validator, type, decoded);
+        }
+        return decoded;
+    }
+}
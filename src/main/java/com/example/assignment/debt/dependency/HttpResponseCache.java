@@ -0,0 +1,260 @@
+package com.example.assignment.debt.dependency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of PaymentService response bodies with their {@code ETag}/{@code Last-Modified} validators,
+ * keyed by request url. Every entry is stored as a body file and a properties file holding the validators, so
+ * the cache survives restarts.
+ * <p>
+ * When enabled, decoded results are additionally kept in memory with the validator they were decoded for, so
+ * that an unchanged response does not even need to be parsed again. This holds every decoded response in memory
+ * between refreshes, so it is disabled along with the external payment join.
+ *
+ * @author Sreeni Sannuthi
+ */
+public class HttpResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpResponseCache.class);
+
+    private static final String URL = "url";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String CONTENT_TYPE = "contentType";
+
+    private final Path directory;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<String, Decoded> decodedResults = new ConcurrentHashMap<>();
+
+    private final boolean reuseDecodedResults;
+
+    public HttpResponseCache(Path directory, boolean reuseDecodedResults) {
+        this.directory = directory;
+        this.reuseDecodedResults = reuseDecodedResults;
+    }
+
+    /**
+     * @param url
+     * @return validators of the cached response for the url, or null when nothing usable is cached.
+     */
+    public Entry get(String url) {
+        Entry entry = entries.get(url);
+        if (entry == null) {
+            entry = load(url);
+            if (entry != null) {
+                entries.put(url, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @param url
+     * @return the cached response body for the url, or null when it is no longer on disk.
+     */
+    public byte[] getBody(String url) {
+        try {
+            return Files.readAllBytes(bodyFile(url));
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached response body for {}", url, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param url
+     * @return size of the cached response body for the url, or -1 when it is no longer on disk.
+     */
+    public long getBodySize(String url) {
+        try {
+            return Files.size(bodyFile(url));
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param url
+     * @return stream of the cached response body for the url, or null when it is no longer on disk.
+     */
+    public InputStream openBody(String url) {
+        try {
+            return Files.newInputStream(bodyFile(url));
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached response body for {}", url, e);
+            return null;
+        }
+    }
+
+    public void put(String url, Entry entry, byte[] body) {
+        try {
+            store(url, entry, bodyTempFile -> Files.write(bodyTempFile, body));
+        } catch (IOException e) {
+            LOGGER.warn("Could not cache response for {}", url, e);
+            evict(url);
+        }
+    }
+
+    /**
+     * Stores a response body as it is read from the stream, without holding it in memory.
+     * @param url
+     * @param entry
+     * @param body
+     * @throws IOException when the body could not be read or stored, in which case nothing is cached for the url
+     */
+    public void put(String url, Entry entry, InputStream body) throws IOException {
+        try {
+            store(url, entry, bodyTempFile -> Files.copy(body, bodyTempFile, StandardCopyOption.REPLACE_EXISTING));
+        } catch (IOException e) {
+            evict(url);
+            throw e;
+        }
+    }
+
+    public void evict(String url) {
+        entries.remove(url);
+        decodedResults.remove(url);
+        try {
+            Files.deleteIfExists(metadataFile(url));
+            Files.deleteIfExists(bodyFile(url));
+        } catch (IOException e) {
+            LOGGER.warn("Could not evict cached response for {}", url, e);
+        }
+    }
+
+    /**
+     * @param url
+     * @param validator
+     * @param type
+     * @return the result decoded earlier for the same url, validator and type, or null.
+     */
+    public Object getDecoded(String url, String validator, Type type) {
+        if (!reuseDecodedResults) {
+            return null;
+        }
+        Decoded decoded = decodedResults.get(url);
+        if (decoded != null && decoded.getValidator().equals(validator) && decoded.getType().equals(type)) {
+            return decoded.getValue();
+        }
+        return null;
+    }
+
+    public void putDecoded(String url, String validator, Type type, Object value) {
+        if (reuseDecodedResults) {
+            decodedResults.put(url, new Decoded(validator, type, value));
+        }
+    }
+
+    private void store(String url, Entry entry, BodyWriter bodyWriter) throws IOException {
+        Files.createDirectories(directory);
+        Properties properties = new Properties();
+        properties.setProperty(URL, url);
+        setIfNotNull(properties, ETAG, entry.getEtag());
+        setIfNotNull(properties, LAST_MODIFIED, entry.getLastModified());
+        setIfNotNull(properties, CONTENT_TYPE, entry.getContentType());
+        Path bodyTempFile = Files.createTempFile(directory, "body-", ".tmp");
+        Path metadataTempFile = Files.createTempFile(directory, "metadata-", ".tmp");
+        try {
+            bodyWriter.write(bodyTempFile);
+            try (OutputStream out = Files.newOutputStream(metadataTempFile)) {
+                properties.store(out, null);
+            }
+            // Body first, so that metadata never points at an older body
+            Files.move(bodyTempFile, bodyFile(url), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.move(metadataTempFile, metadataFile(url), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            entries.put(url, entry);
+        } finally {
+            Files.deleteIfExists(bodyTempFile);
+            Files.deleteIfExists(metadataTempFile);
+        }
+    }
+
+    private Entry load(String url) {
+        Path metadataFile = metadataFile(url);
+        if (!Files.exists(metadataFile) || !Files.exists(bodyFile(url))) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(metadataFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached response metadata for {}", url, e);
+            return null;
+        }
+        if (!url.equals(properties.getProperty(URL))) {
+            return null;
+        }
+        Entry entry = new Entry(properties.getProperty(ETAG), properties.getProperty(LAST_MODIFIED),
+                properties.getProperty(CONTENT_TYPE));
+        return entry.getValidator() == null ? null : entry;
+    }
+
+    private Path bodyFile(String url) {
+        return directory.resolve(key(url) + ".body");
+    }
+
+    private Path metadataFile(String url) {
+        return directory.resolve(key(url) + ".properties");
+    }
+
+    private static String key(String url) {
+        return DigestUtils.md5DigestAsHex(url.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void setIfNotNull(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Validators and content type of a cached response.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final String contentType;
+
+        /**
+         * @return the strongest validator of the response, ETag over Last-Modified, or null when it has none.
+         */
+        public String getValidator() {
+            return etag != null ? etag : lastModified;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(Path bodyTempFile) throws IOException;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Decoded {
+        private final String validator;
+        private final Type type;
+        private final Object value;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.assignment.debt.dependency;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import feign.Util;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Feign {@link Decoder} decoding a JSON array response into a lazy {@link Stream} of its elements, read from the
+ * response body only as the stream is consumed, so that the whole array is never held in memory. Closing the
+ * stream closes the response.
+ * <p>
+ * Other types are decoded by the delegate and the response is closed right after, so clients using this decoder
+ * are built with {@code doNotCloseAfterDecode()} without leaking responses.
+ *
+ * @author Sreeni Sannuthi
+ */
+public class JsonStreamDecoder implements Decoder {
+
+    private final Decoder delegate;
+
+    private final ObjectMapper objectMapper;
+
+    public JsonStreamDecoder(Decoder delegate, ObjectMapper objectMapper) {
+        this.delegate = delegate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        if (!isStream(type)) {
+            try {
+                return delegate.decode(response, type);
+            } finally {
+                Util.ensureClosed(response.body());
+            }
+        }
+        if (response.body() == null) {
+            return Stream.empty();
+        }
+        Type elementType = ((ParameterizedType) type).getActualTypeArguments()[0];
+        MappingIterator<Object> elements;
+        try {
+            elements = objectMapper.readerFor(objectMapper.constructType(elementType))
+                    .readValues(response.body().asInputStream());
+        } catch (IOException | RuntimeException e) {
+            Util.ensureClosed(response.body());
+            throw e;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        elements.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        Util.ensureClosed(response.body());
+                    }
+                });
+    }
+
+    static boolean isStream(Type type) {
+        return type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == Stream.class;
+    }
+}
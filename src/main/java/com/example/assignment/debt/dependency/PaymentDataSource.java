@@ -0,0 +1,31 @@
+package com.example.assignment.debt.dependency;
+
+import com.example.assignment.debt.dependency.model.Debt;
+import com.example.assignment.debt.dependency.model.Payment;
+import com.example.assignment.debt.dependency.model.PaymentPlan;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Source of the debts, payment plans and payments that the debts summary is computed from, such as the
+ * PaymentService API ({@link PaymentServiceDataSource}) or local export files.
+ *
+ * @author Sreeni Sannuthi
+ */
+public interface PaymentDataSource {
+
+    List<Debt> getAllDebts() throws PaymentServiceClientException;
+
+    List<PaymentPlan> getAllPaymentPlans() throws PaymentServiceClientException;
+
+    List<Payment> getAllPayments() throws PaymentServiceClientException;
+
+    /**
+     * Streams the payments in source order, decoding them only as the stream is consumed, so that they never
+     * all have to be held in memory. The stream must be closed once consumed.
+     * @return
+     * @throws PaymentServiceClientException
+     */
+    Stream<Payment> streamAllPayments() throws PaymentServiceClientException;
+}
@@ -0,0 +1,43 @@
+package com.example.assignment.debt.dependency;
+
+import com.example.assignment.debt.dependency.file.FileExportDataSourceFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the {@link PaymentDataSource} used when no {@code paymentSources.sources} are configured. It is the
+ * PaymentService API at {@code paymentService.url}, unless {@code paymentService.type} is {@code file}, in which
+ * case the debts are computed from the {@code paymentService.debtsFile}, {@code paymentPlansFile} and
+ * {@code paymentsFile} exports. Unlike a file source in {@code paymentSources.sources}, it is not bound by
+ * {@code debtService.sourceRefreshTimeoutMillis}, so it suits recomputing from exports too large to read within
+ * that deadline.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Configuration
+public class PaymentDataSourceConfiguration {
+
+    /**
+     * Type, export files and parallelism of the default data source, bound from {@code paymentService.*}.
+     * @return
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "payment-service")
+    public PaymentSourceProperties.Source paymentServiceSource() {
+        PaymentSourceProperties.Source source = new PaymentSourceProperties.Source();
+        source.setName("default");
+        return source;
+    }
+
+    @Bean
+    public PaymentDataSource paymentDataSource(PaymentSourceProperties.Source paymentServiceSource,
+                                               ObjectProvider<PaymentServiceClient> paymentServiceClient,
+                                               FileExportDataSourceFactory fileExportDataSourceFactory) {
+        if (paymentServiceSource.getType() == PaymentSourceProperties.SourceType.FILE) {
+            return fileExportDataSourceFactory.build(paymentServiceSource, "paymentService");
+        }
+        return new PaymentServiceDataSource(paymentServiceClient.getObject());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.assignment.debt.dependency;
+
+/**
+ * Response size and cache status of the payment source call running on the current thread, collected by the
+ * client layer for monitoring. Payment source calls are synchronous, so the whole call runs on one thread.
+ *
+ * @author Sreeni Sannuthi
+ */
+public final class PaymentServiceCallStats {
+
+    private static final ThreadLocal<PaymentServiceCallStats> CURRENT = new ThreadLocal<>();
+
+    private long bytes;
+
+    private boolean cacheHit;
+
+    private PaymentServiceCallStats() {
+    }
+
+    /**
+     * Starts collecting the stats of a call on the current thread.
+     * @return
+     */
+    public static PaymentServiceCallStats start() {
+        PaymentServiceCallStats stats = new PaymentServiceCallStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * Stops collecting stats on the current thread.
+     */
+    public static void finish() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Records a response received for the call running on the current thread, if stats are being collected.
+     * Retried calls add up their responses.
+     * @param bytes
+     * @param cacheHit
+     */
+    public static void recordResponse(long bytes, boolean cacheHit) {
+        PaymentServiceCallStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.bytes += Math.max(0, bytes);
+            stats.cacheHit = cacheHit;
+        }
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+}
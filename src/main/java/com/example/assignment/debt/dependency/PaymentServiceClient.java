@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * FeignClient for PaymentService API (TrueAccord mock endpoint)
@@ -30,4 +31,14 @@ public interface PaymentServiceClient {
     @RequestMapping(method = RequestMethod.GET, value = "payments",
             headers = {"Accept=application/json"})
     List<Payment> getAllPayments() throws PaymentServiceClientException;
+
+    /**
+     * Same as {@link #getAllPayments()}, but decoded lazily by {@link JsonStreamDecoder}; the stream must be
+     * closed to release the response.
+     * @return
+     * @throws PaymentServiceClientException
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "payments",
+            headers = {"Accept=application/json"})
+    Stream<Payment> streamAllPayments() throws PaymentServiceClientException;
 }
@@ -5,13 +5,17 @@
 
 package com.example.assignment.debt.dependency;
 
+import feign.Client;
+import feign.Feign;
 import feign.Logger;
 import feign.Request;
 import feign.Retryer;
+import feign.codec.Decoder;
 import feign.codec.ErrorDecoder;
 import feign.slf4j.Slf4jLogger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Scope;
 
 /**
  * @author Sreeni Sannuthi
@@ -42,9 +46,39 @@ public class PaymentServiceClientConfiguration {
         return new Retryer.Default(retryLatencyInMillis, retryLatencyInMillis, retryCount);
     }
 
+    /**
+     * Client, decoder and response cache are built by {@link PaymentServiceClientFactory}, like the ones of the
+     * {@link PaymentSourceRegistry} sources.
+     * @param paymentServiceClientFactory
+     * @param retryer
+     * @return
+     */
     @Bean
-    public ErrorDecoder errorDecoder() {
-        return new PaymentServiceErrorDecoder();
+    @Scope("prototype")
+    public Feign.Builder feignBuilder(PaymentServiceClientFactory paymentServiceClientFactory, Retryer retryer) {
+        return paymentServiceClientFactory.builder().retryer(retryer);
+    }
+
+    @Bean
+    public HttpResponseCache paymentServiceResponseCache(PaymentServiceClientFactory paymentServiceClientFactory) {
+        return paymentServiceClientFactory.responseCache(null);
+    }
+
+    @Bean
+    public Client feignClient(PaymentServiceClientFactory paymentServiceClientFactory,
+                              HttpResponseCache paymentServiceResponseCache) {
+        return paymentServiceClientFactory.client(paymentServiceResponseCache);
+    }
+
+    @Bean
+    public Decoder feignDecoder(PaymentServiceClientFactory paymentServiceClientFactory,
+                                HttpResponseCache paymentServiceResponseCache) {
+        return paymentServiceClientFactory.decoder(paymentServiceResponseCache);
+    }
+
+    @Bean
+    public ErrorDecoder errorDecoder(PaymentServiceClientFactory paymentServiceClientFactory) {
+        return paymentServiceClientFactory.errorDecoder();
     }
 
     @Bean
@@ -0,0 +1,114 @@
+package com.example.assignment.debt.dependency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Client;
+import feign.Feign;
+import feign.Logger;
+import feign.Request;
+import feign.Retryer;
+import feign.codec.Decoder;
+import feign.codec.ErrorDecoder;
+import feign.optionals.OptionalDecoder;
+import feign.slf4j.Slf4jLogger;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Builds the parts of a {@link PaymentServiceClient} shared by the {@code paymentService.url} client of
+ * {@link PaymentServiceClientConfiguration} and the API sources of {@link PaymentSourceRegistry}: the response
+ * cache, the caching HTTP client, the decoder chain and the error decoder.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Component
+public class PaymentServiceClientFactory {
+
+    private final ObjectFactory<HttpMessageConverters> messageConverters;
+
+    private final ObjectMapper objectMapper;
+
+    private final Path cacheDirectory;
+
+    private final boolean reuseDecodedResponses;
+
+    private final long maxBufferedResponseBytes;
+
+    public PaymentServiceClientFactory(ObjectFactory<HttpMessageConverters> messageConverters,
+                                       ObjectMapper objectMapper,
+                                       @Value("${paymentService.cacheDirectory:"
+                                               + "${java.io.tmpdir}/payment-service-cache}") String cacheDirectory,
+                                       @Value("${paymentService.reuseDecodedResponses:"
+                                               + "#{!${debtService.externalJoin.enabled:false}}}")
+                                               boolean reuseDecodedResponses,
+                                       @Value("${paymentService.maxBufferedResponseBytes:8388608}")
+                                               long maxBufferedResponseBytes) {
+        this.messageConverters = messageConverters;
+        this.objectMapper = objectMapper;
+        this.cacheDirectory = Paths.get(cacheDirectory);
+        this.reuseDecodedResponses = reuseDecodedResponses;
+        this.maxBufferedResponseBytes = maxBufferedResponseBytes;
+    }
+
+    /**
+     * @param cacheName subdirectory of {@code paymentService.cacheDirectory} holding the cache, or null for the
+     *                  directory itself
+     * @return
+     */
+    public HttpResponseCache responseCache(String cacheName) {
+        return new HttpResponseCache(cacheName == null ? cacheDirectory : cacheDirectory.resolve(cacheName),
+                reuseDecodedResponses);
+    }
+
+    public Client client(HttpResponseCache responseCache) {
+        return new CachingClient(new Client.Default(null, null), responseCache, maxBufferedResponseBytes);
+    }
+
+    public Decoder decoder(HttpResponseCache responseCache) {
+        return new CachingDecoder(new JsonStreamDecoder(
+                new OptionalDecoder(new ResponseEntityDecoder(new SpringDecoder(messageConverters))), objectMapper),
+                responseCache);
+    }
+
+    public ErrorDecoder errorDecoder() {
+        return new PaymentServiceErrorDecoder();
+    }
+
+    /**
+     * Responses are closed by {@link JsonStreamDecoder} instead, as streamed responses are read after decoding.
+     * @return
+     */
+    public Feign.Builder builder() {
+        return Feign.builder().doNotCloseAfterDecode();
+    }
+
+    /**
+     * Builds a client configured like the {@code paymentService.url} one, but with its own retries, timeouts and
+     * response cache.
+     * @param name name of the source, also naming its response cache
+     * @param url
+     * @param retryer
+     * @param options
+     * @return
+     */
+    public PaymentServiceClient build(String name, String url, Retryer retryer, Request.Options options) {
+        HttpResponseCache responseCache = responseCache(name);
+        return builder()
+                .contract(new SpringMvcContract())
+                .client(client(responseCache))
+                .decoder(decoder(responseCache))
+                .errorDecoder(errorDecoder())
+                .retryer(retryer)
+                .options(options)
+                .logger(new Slf4jLogger(PaymentServiceClient.class))
+                .logLevel(Logger.Level.FULL)
+                .target(PaymentServiceClient.class, url);
+    }
+}
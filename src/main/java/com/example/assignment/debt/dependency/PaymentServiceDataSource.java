@@ -0,0 +1,42 @@
+package com.example.assignment.debt.dependency;
+
+import com.example.assignment.debt.dependency.model.Debt;
+import com.example.assignment.debt.dependency.model.Payment;
+import com.example.assignment.debt.dependency.model.PaymentPlan;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * {@link PaymentDataSource} backed by the PaymentService API through a {@link PaymentServiceClient}.
+ *
+ * @author Sreeni Sannuthi
+ */
+public class PaymentServiceDataSource implements PaymentDataSource {
+
+    private final PaymentServiceClient paymentServiceClient;
+
+    public PaymentServiceDataSource(PaymentServiceClient paymentServiceClient) {
+        this.paymentServiceClient = paymentServiceClient;
+    }
+
+    @Override
+    public List<Debt> getAllDebts() throws PaymentServiceClientException {
+        return paymentServiceClient.getAllDebts();
+    }
+
+    @Override
+    public List<PaymentPlan> getAllPaymentPlans() throws PaymentServiceClientException {
+        return paymentServiceClient.getAllPaymentPlans();
+    }
+
+    @Override
+    public List<Payment> getAllPayments() throws PaymentServiceClientException {
+        return paymentServiceClient.getAllPayments();
+    }
+
+    @Override
+    public Stream<Payment> streamAllPayments() throws PaymentServiceClientException {
+        return paymentServiceClient.streamAllPayments();
+    }
+}
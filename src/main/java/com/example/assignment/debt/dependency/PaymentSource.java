@@ -0,0 +1,20 @@
+package com.example.assignment.debt.dependency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A PaymentService backend or export together with its own data source and bulkhead thread pool, so that a slow
+ * or failing source cannot use up the threads of the other sources.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Getter
+@AllArgsConstructor
+public class PaymentSource {
+    private final String name;
+    private final PaymentDataSource dataSource;
+    private final ExecutorService bulkhead;
+}
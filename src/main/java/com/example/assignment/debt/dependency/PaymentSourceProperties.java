@@ -0,0 +1,63 @@
+package com.example.assignment.debt.dependency;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PaymentService backends aggregated in a single refresh, bound from {@code paymentSources.sources[n].*}.
+ * When no source is configured, the single client bound to {@code paymentService.url} is used.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "payment-sources")
+public class PaymentSourceProperties {
+
+    private List<Source> sources = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Source {
+        /**
+         * Name of the source, used in thread names, logs and freshness reporting.
+         */
+        private String name;
+        private SourceType type = SourceType.HTTP;
+        private String url;
+        private int retryLimit = 3;
+        private int connectionTimeoutMillis = 500;
+        private int readTimeoutMillis = 500;
+        private int retryLatencyInMillis = 10;
+        /**
+         * Number of threads in the bulkhead of this source; the debts, payment_plans and payments calls of a
+         * refresh run concurrently when it is at least 3.
+         */
+        private int poolSize = 3;
+        /**
+         * Export files of a {@link SourceType#FILE} source, NDJSON or CSV ({@code .csv}).
+         */
+        private String debtsFile;
+        private String paymentPlansFile;
+        private String paymentsFile;
+        /**
+         * Number of threads, and of chunks ahead of the consumer, an export file is parsed with.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    public enum SourceType {
+        /**
+         * PaymentService API at {@code url}.
+         */
+        HTTP,
+        /**
+         * Local export files.
+         */
+        FILE
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.assignment.debt.dependency;
+
+import com.example.assignment.debt.dependency.file.FileExportDataSource;
+import com.example.assignment.debt.dependency.file.FileExportDataSourceFactory;
+import feign.Request;
+import feign.Retryer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds a {@link PaymentDataSource} and a bulkhead thread pool for every source configured in
+ * {@link PaymentSourceProperties}. Export file sources are read with a {@link FileExportDataSource} built by
+ * {@link FileExportDataSourceFactory}; API sources use a {@link PaymentServiceClient} built by
+ * {@link PaymentServiceClientFactory} like the {@code paymentService.url} one, but with the timeouts and retries
+ * of their own source and a response cache in their own subdirectory of {@code paymentService.cacheDirectory}.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Component
+public class PaymentSourceRegistry implements DisposableBean {
+
+    private final List<PaymentSource> sources;
+
+    public PaymentSourceRegistry(PaymentSourceProperties paymentSourceProperties,
+                                 PaymentServiceClientFactory paymentServiceClientFactory,
+                                 FileExportDataSourceFactory fileExportDataSourceFactory) {
+        List<PaymentSource> paymentSources = new ArrayList<>();
+        for (PaymentSourceProperties.Source source : paymentSourceProperties.getSources()) {
+            Assert.hasText(source.getName(), "paymentSources.sources[].name is required");
+            PaymentDataSource dataSource;
+            if (source.getType() == PaymentSourceProperties.SourceType.FILE) {
+                dataSource = fileExportDataSourceFactory.build(source, "paymentSources.sources[]");
+            } else {
+                Assert.hasText(source.getUrl(), "paymentSources.sources[].url is required for " + source.getName());
+                dataSource = new PaymentServiceDataSource(paymentServiceClientFactory.build(source.getName(),
+                        source.getUrl(),
+                        new Retryer.Default(source.getRetryLatencyInMillis(), source.getRetryLatencyInMillis(),
+                                source.getRetryLimit()),
+                        new Request.Options(source.getConnectionTimeoutMillis(), source.getReadTimeoutMillis())));
+            }
+            paymentSources.add(new PaymentSource(source.getName(), dataSource,
+                    Executors.newFixedThreadPool(Math.max(1, source.getPoolSize()),
+                            new CustomizableThreadFactory("payment-source-" + source.getName() + "-"))));
+        }
+        this.sources = Collections.unmodifiableList(paymentSources);
+    }
+
+    /**
+     * @return configured sources in configuration order, empty when only {@code paymentService.url} is used.
+     */
+    public List<PaymentSource> getSources() {
+        return sources;
+    }
+
+    @Override
+    public void destroy() {
+        sources.forEach(source -> source.getBulkhead().shutdownNow());
+    }
+}
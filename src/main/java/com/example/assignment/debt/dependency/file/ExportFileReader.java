@@ -0,0 +1,308 @@
+package com.example.assignment.debt.dependency.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads NDJSON and CSV ({@code .csv}) export files by memory-mapping them in chunks split on line boundaries
+ * and parsing the chunks concurrently on a dedicated executor, straight from the mapped bytes. Rows are streamed
+ * in file order, and only the chunks being parsed ahead of the consumer are held in memory.
+ *
+ * @author Sreeni Sannuthi
+ */
+public class ExportFileReader {
+
+    /**
+     * Files are not split in chunks smaller than this, as parsing them in parallel would not pay off.
+     */
+    static final long DEFAULT_MIN_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Upper bound of a chunk, which also bounds the rows held in memory per chunk parsed ahead of the consumer.
+     */
+    static final long DEFAULT_MAX_CHUNK_BYTES = 1 << 23;
+
+    private static final int SCAN_BUFFER_BYTES = 8192;
+
+    private final int parallelism;
+
+    private final long minChunkBytes;
+
+    private final long maxChunkBytes;
+
+    private final ExecutorService parser;
+
+    /**
+     * @param parallelism number of chunks parsed ahead of the consumer, and of chunks a file is split in unless
+     *                    it is small or large
+     * @param parser executor the chunks are parsed on, with at least {@code parallelism} threads; it must not be
+     *               the executor consuming the rows, as the consumer waits for the chunks
+     */
+    public ExportFileReader(int parallelism, ExecutorService parser) {
+        this(parallelism, DEFAULT_MIN_CHUNK_BYTES, DEFAULT_MAX_CHUNK_BYTES, parser);
+    }
+
+    ExportFileReader(int parallelism, long minChunkBytes, long maxChunkBytes, ExecutorService parser) {
+        this.parallelism = Math.max(1, parallelism);
+        this.minChunkBytes = Math.max(1, minChunkBytes);
+        this.maxChunkBytes = Math.max(this.minChunkBytes, maxChunkBytes);
+        this.parser = parser;
+    }
+
+    public <T> List<T> read(Path file, ExportRowMapper<T> mapper) throws IOException {
+        try (Stream<T> rows = stream(file, mapper)) {
+            return rows.collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Streams the rows of the file in file order. Chunks are parsed up to {@code parallelism} ahead of the
+     * consumer; the stream must be closed to release the file.
+     * @param file
+     * @param mapper
+     * @return
+     * @throws IOException
+     */
+    public <T> Stream<T> stream(Path file, ExportRowMapper<T> mapper) throws IOException {
+        boolean csv = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            long dataStart = 0;
+            String[] csvHeader = null;
+            if (csv) {
+                long headerEnd = lineEnd(channel, 0, size);
+                csvHeader = readHeader(channel, headerEnd);
+                dataStart = Math.min(size, headerEnd + 1);
+                try {
+                    new ExportRecord(mapper.fieldNames()).useCsvHeader(csvHeader);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Could not read header of " + file + ": " + e.getMessage(), e);
+                }
+            }
+            ChunkRows<T> rows = new ChunkRows<>(file, channel, split(channel, dataStart, size), mapper, csvHeader);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false)
+                    .onClose(rows::close);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Splits the data of the file in chunks of whole lines.
+     * @return start and end offsets of every chunk
+     */
+    private List<long[]> split(FileChannel channel, long dataStart, long size) throws IOException {
+        long chunkBytes = Math.min(maxChunkBytes,
+                Math.max(minChunkBytes, (size - dataStart + parallelism - 1) / parallelism));
+        List<long[]> chunks = new ArrayList<>();
+        long start = dataStart;
+        while (start < size) {
+            long end = start + chunkBytes >= size ? size
+                    : Math.min(size, lineEnd(channel, start + chunkBytes - 1, size) + 1);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line longer than 2GB at byte " + start);
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private <T> List<T> parseChunk(Path file, FileChannel channel, long[] chunk, ExportRowMapper<T> mapper,
+                                   String[] csvHeader) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + file, e);
+        }
+        ExportRecord record = new ExportRecord(mapper.fieldNames());
+        if (csvHeader != null) {
+            record.useCsvHeader(csvHeader);
+        }
+        List<T> rows = new ArrayList<>();
+        int limit = buffer.limit();
+        int position = 0;
+        while (position < limit) {
+            int lineEnd = position;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > position && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (!isBlank(buffer, position, contentEnd)) {
+                try {
+                    if (csvHeader != null) {
+                        record.parseCsv(buffer, position, contentEnd);
+                    } else {
+                        record.parseJson(buffer, position, contentEnd);
+                    }
+                    rows.add(mapper.map(record));
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Could not read line at byte " + (chunk[0] + position)
+                            + " of " + file + ": " + e.getMessage(), e);
+                }
+            }
+            position = lineEnd + 1;
+        }
+        return rows;
+    }
+
+    /**
+     * @return offset of the first line feed at or after the given offset, or the size of the file.
+     */
+    private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+        long position = from;
+        while (position < size) {
+            scanBuffer.clear();
+            int read = channel.read(scanBuffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scanBuffer.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static String[] readHeader(FileChannel channel, long headerEnd) throws IOException {
+        ByteBuffer headerBuffer = ByteBuffer.allocate((int) headerEnd);
+        // The buffer position is also the file offset, as the header starts the file
+        while (headerBuffer.hasRemaining()) {
+            if (channel.read(headerBuffer, headerBuffer.position()) < 0) {
+                break;
+            }
+        }
+        String header = new String(headerBuffer.array(), 0, headerBuffer.position(), StandardCharsets.UTF_8);
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        String[] columns = header.trim().split(",", -1);
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = columns[column].trim().replace("\"", "");
+        }
+        return columns;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int position, int end) {
+        for (int i = position; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Iterates the rows of the chunks of a file in order, keeping {@code parallelism} chunks submitted for parsing
+     * ahead of the chunk being consumed.
+     */
+    private final class ChunkRows<T> implements Iterator<T> {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final Iterator<long[]> chunks;
+        private final ExportRowMapper<T> mapper;
+        private final String[] csvHeader;
+
+        private final Deque<Future<List<T>>> parsedChunks = new ArrayDeque<>();
+
+        private Iterator<T> rows = Collections.emptyIterator();
+
+        ChunkRows(Path file, FileChannel channel, List<long[]> chunks, ExportRowMapper<T> mapper,
+                  String[] csvHeader) {
+            this.file = file;
+            this.channel = channel;
+            this.chunks = chunks.iterator();
+            this.mapper = mapper;
+            this.csvHeader = csvHeader;
+            while (parsedChunks.size() < parallelism && this.chunks.hasNext()) {
+                submitNextChunk();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!rows.hasNext() && !parsedChunks.isEmpty()) {
+                rows = join(parsedChunks.removeFirst()).iterator();
+                if (chunks.hasNext()) {
+                    submitNextChunk();
+                }
+            }
+            return rows.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return rows.next();
+        }
+
+        void close() {
+            // Chunks being parsed finish on their own; their buffers stay valid after the channel is closed
+            parsedChunks.forEach(parsedChunk -> parsedChunk.cancel(false));
+            parsedChunks.clear();
+            rows = Collections.emptyIterator();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close " + file, e);
+            }
+        }
+
+        private void submitNextChunk() {
+            long[] chunk = chunks.next();
+            parsedChunks.addLast(parser.submit(() -> parseChunk(file, channel, chunk, mapper, csvHeader)));
+        }
+
+        private List<T> join(Future<List<T>> parsedChunk) {
+            try {
+                return parsedChunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading " + file, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException("Could not read " + file, e.getCause());
+            }
+        }
+    }
+}
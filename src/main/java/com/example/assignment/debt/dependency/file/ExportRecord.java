@@ -0,0 +1,520 @@
+package com.example.assignment.debt.dependency.file;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A single line of an export file, parsed in place: every field is kept as a byte range of the mapped file and
+ * only converted when read, so no String is allocated per line. One instance is reused for all the lines of a
+ * chunk, so it must not be kept once the {@link ExportRowMapper} returns.
+ * <p>
+ * NDJSON lines are flat JSON objects whose keys are the field names; CSV lines hold the fields in the columns
+ * named by the header line, which must name every field. Missing, empty and {@code null} fields read as null.
+ *
+ * @author Sreeni Sannuthi
+ */
+public final class ExportRecord {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final byte[][] fieldNames;
+
+    private final int[] starts;
+
+    private final int[] ends;
+
+    /**
+     * Whether a field was a quoted value containing escapes, which then needs decoding when read as a String.
+     */
+    private final boolean[] escaped;
+
+    /**
+     * Whether a field was quoted, in which case the literal {@code null} is a String.
+     */
+    private final boolean[] quoted;
+
+    /**
+     * For CSV, index of the field held by every column, or -1 for columns that are not read.
+     */
+    private int[] columnFields;
+
+    private ByteBuffer buffer;
+
+    ExportRecord(String[] fieldNames) {
+        this.fieldNames = new byte[fieldNames.length][];
+        for (int field = 0; field < fieldNames.length; field++) {
+            this.fieldNames[field] = fieldNames[field].getBytes(StandardCharsets.UTF_8);
+        }
+        this.starts = new int[fieldNames.length];
+        this.ends = new int[fieldNames.length];
+        this.escaped = new boolean[fieldNames.length];
+        this.quoted = new boolean[fieldNames.length];
+    }
+
+    /**
+     * Maps the columns of a CSV header to the fields of this record.
+     * @param header column names, in file order
+     * @throws IllegalArgumentException when fields of this record have no column, naming them
+     */
+    void useCsvHeader(String[] header) {
+        columnFields = new int[header.length];
+        boolean[] hasColumn = new boolean[fieldNames.length];
+        for (int column = 0; column < header.length; column++) {
+            columnFields[column] = fieldIndex(header[column].trim().getBytes(StandardCharsets.UTF_8));
+            if (columnFields[column] >= 0) {
+                hasColumn[columnFields[column]] = true;
+            }
+        }
+        List<String> missingColumns = new ArrayList<>();
+        for (int field = 0; field < fieldNames.length; field++) {
+            if (!hasColumn[field]) {
+                missingColumns.add(new String(fieldNames[field], StandardCharsets.UTF_8));
+            }
+        }
+        if (!missingColumns.isEmpty()) {
+            throw new IllegalArgumentException("Missing columns " + missingColumns);
+        }
+    }
+
+    /**
+     * @param field
+     * @return true when the field is missing, empty or null.
+     */
+    public boolean isNull(int field) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        return start < 0 || (length == 0 && !quoted[field]) || (!quoted[field] && regionEquals(start, length, NULL));
+    }
+
+    public Integer getInt(int field) {
+        if (isNull(field)) {
+            return null;
+        }
+        long value = parseLong(starts[field], ends[field], field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw malformed(field);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a decimal the same way Jackson does, i.e. with the scale it is written with.
+     * @param field
+     * @return
+     */
+    public BigDecimal getDecimal(int field) {
+        if (isNull(field)) {
+            return null;
+        }
+        int position = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        byte sign = buffer.get(position);
+        if (sign == '-' || sign == '+') {
+            negative = sign == '-';
+            position++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean anyDigit = false;
+        for (; position < end; position++) {
+            byte b = buffer.get(position);
+            if (b >= '0' && b <= '9') {
+                anyDigit = true;
+                if (unscaled != 0 || b != '0') {
+                    digits++;
+                }
+                if (digits > MAX_LONG_DIGITS) {
+                    return new BigDecimal(toChars(starts[field], end));
+                }
+                unscaled = unscaled * 10 + (b - '0');
+                if (fraction) {
+                    scale++;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else if (b == 'e' || b == 'E') {
+                break;
+            } else {
+                throw malformed(field);
+            }
+        }
+        if (!anyDigit) {
+            throw malformed(field);
+        }
+        if (position < end) {
+            long exponent = parseLong(position + 1, end, field);
+            if (exponent > Integer.MAX_VALUE || exponent < Integer.MIN_VALUE) {
+                throw malformed(field);
+            }
+            scale = Math.toIntExact(scale - exponent);
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    /**
+     * Reads an ISO {@code yyyy-MM-dd} date.
+     * @param field
+     * @return
+     */
+    public LocalDate getDate(int field) {
+        if (isNull(field)) {
+            return null;
+        }
+        int start = starts[field];
+        if (ends[field] - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+            return LocalDate.parse(getString(field));
+        }
+        return LocalDate.of((int) parseLong(start, start + 4, field), (int) parseLong(start + 5, start + 7, field),
+                (int) parseLong(start + 8, start + 10, field));
+    }
+
+    /**
+     * @param field
+     * @param knownValues values returned as is when the field holds one of them, to avoid allocating a String
+     * @return
+     */
+    public String getString(int field, String... knownValues) {
+        if (isNull(field)) {
+            return null;
+        }
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (!escaped[field]) {
+            for (String knownValue : knownValues) {
+                if (knownValue.length() == length && regionEqualsAscii(start, knownValue)) {
+                    return knownValue;
+                }
+            }
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return unescape(start, ends[field]);
+    }
+
+    /**
+     * Parses an NDJSON line.
+     * @param buffer
+     * @param position first byte of the line
+     * @param end      end of the line, exclusive
+     */
+    void parseJson(ByteBuffer buffer, int position, int end) {
+        reset(buffer);
+        position = skipWhitespace(position, end);
+        if (position >= end || buffer.get(position) != '{') {
+            throw malformedLine(position);
+        }
+        position = skipWhitespace(position + 1, end);
+        if (position < end && buffer.get(position) == '}') {
+            return;
+        }
+        while (true) {
+            if (position >= end || buffer.get(position) != '"') {
+                throw malformedLine(position);
+            }
+            int keyStart = position + 1;
+            int keyEnd = closingQuote(keyStart, end);
+            int field = fieldIndex(keyStart, keyEnd - keyStart);
+            position = skipWhitespace(keyEnd + 1, end);
+            if (position >= end || buffer.get(position) != ':') {
+                throw malformedLine(position);
+            }
+            position = skipWhitespace(position + 1, end);
+            if (position >= end) {
+                throw malformedLine(position);
+            }
+            byte first = buffer.get(position);
+            int valueStart;
+            int valueEnd;
+            boolean valueQuoted = first == '"';
+            boolean valueEscaped = false;
+            if (valueQuoted) {
+                valueStart = position + 1;
+                valueEnd = closingQuote(valueStart, end);
+                for (int i = valueStart; i < valueEnd && !valueEscaped; i++) {
+                    valueEscaped = buffer.get(i) == '\\';
+                }
+                position = valueEnd + 1;
+            } else if (first == '{' || first == '[') {
+                valueStart = position;
+                valueEnd = skipNested(position, end);
+                position = valueEnd;
+                // Nested values are never read as fields
+                field = -1;
+            } else {
+                valueStart = position;
+                while (position < end && !isValueTerminator(buffer.get(position))) {
+                    position++;
+                }
+                valueEnd = position;
+            }
+            if (field >= 0) {
+                set(field, valueStart, valueEnd, valueQuoted, valueEscaped);
+            }
+            position = skipWhitespace(position, end);
+            if (position >= end) {
+                throw malformedLine(position);
+            }
+            byte separator = buffer.get(position);
+            if (separator == '}') {
+                return;
+            }
+            if (separator != ',') {
+                throw malformedLine(position);
+            }
+            position = skipWhitespace(position + 1, end);
+        }
+    }
+
+    /**
+     * Parses a CSV line, after {@link #useCsvHeader(String[])}.
+     * @param buffer
+     * @param position first byte of the line
+     * @param end      end of the line, exclusive
+     */
+    void parseCsv(ByteBuffer buffer, int position, int end) {
+        reset(buffer);
+        int column = 0;
+        while (position <= end) {
+            int field = column < columnFields.length ? columnFields[column] : -1;
+            int valueStart;
+            int valueEnd;
+            boolean valueQuoted = position < end && buffer.get(position) == '"';
+            boolean valueEscaped = false;
+            if (valueQuoted) {
+                valueStart = position + 1;
+                position = valueStart;
+                while (true) {
+                    if (position >= end) {
+                        throw malformedLine(position);
+                    }
+                    if (buffer.get(position) == '"') {
+                        if (position + 1 < end && buffer.get(position + 1) == '"') {
+                            valueEscaped = true;
+                            position += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    position++;
+                }
+                valueEnd = position;
+                position++;
+            } else {
+                valueStart = position;
+                while (position < end && buffer.get(position) != ',') {
+                    position++;
+                }
+                valueEnd = position;
+            }
+            if (field >= 0) {
+                set(field, valueStart, valueEnd, valueQuoted, valueEscaped);
+            }
+            if (position < end && buffer.get(position) != ',') {
+                throw malformedLine(position);
+            }
+            position++;
+            column++;
+        }
+    }
+
+    private void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        Arrays.fill(starts, -1);
+        Arrays.fill(ends, -1);
+    }
+
+    private void set(int field, int start, int end, boolean isQuoted, boolean isEscaped) {
+        starts[field] = start;
+        ends[field] = end;
+        quoted[field] = isQuoted;
+        escaped[field] = isEscaped;
+    }
+
+    private int fieldIndex(byte[] name) {
+        for (int field = 0; field < fieldNames.length; field++) {
+            if (Arrays.equals(fieldNames[field], name)) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private int fieldIndex(int start, int length) {
+        for (int field = 0; field < fieldNames.length; field++) {
+            if (regionEquals(start, length, fieldNames[field])) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(int start, int length, byte[] bytes) {
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionEqualsAscii(int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer.get(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long parseLong(int position, int end, int field) {
+        if (position >= end) {
+            throw malformed(field);
+        }
+        boolean negative = false;
+        byte sign = buffer.get(position);
+        if (sign == '-' || sign == '+') {
+            negative = sign == '-';
+            position++;
+            if (position >= end) {
+                throw malformed(field);
+            }
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            byte b = buffer.get(position);
+            if (b < '0' || b > '9' || value > (Long.MAX_VALUE - 9) / 10) {
+                throw malformed(field);
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private int skipWhitespace(int position, int end) {
+        while (position < end && isWhitespace(buffer.get(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private int closingQuote(int position, int end) {
+        while (position < end) {
+            byte b = buffer.get(position);
+            if (b == '\\') {
+                position += 2;
+            } else if (b == '"') {
+                return position;
+            } else {
+                position++;
+            }
+        }
+        throw malformedLine(position);
+    }
+
+    private int skipNested(int position, int end) {
+        int depth = 0;
+        while (position < end) {
+            byte b = buffer.get(position);
+            if (b == '"') {
+                position = closingQuote(position + 1, end);
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                if (depth == 0) {
+                    return position + 1;
+                }
+            }
+            position++;
+        }
+        throw malformedLine(position);
+    }
+
+    private char[] toChars(int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) buffer.get(start + i);
+        }
+        return chars;
+    }
+
+    /**
+     * Decodes a quoted value containing escapes, which is rare enough not to be worth avoiding the allocations.
+     */
+    private String unescape(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        String raw = new String(bytes, StandardCharsets.UTF_8);
+        if (columnFields != null) {
+            return raw.replace("\"\"", "\"");
+        }
+        StringBuilder value = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\' || i + 1 >= raw.length()) {
+                value.append(c);
+                continue;
+            }
+            char escape = raw.charAt(++i);
+            switch (escape) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    value.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    value.append(escape);
+            }
+        }
+        return value.toString();
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean isValueTerminator(byte b) {
+        return b == ',' || b == '}' || isWhitespace(b);
+    }
+
+    private IllegalArgumentException malformed(int field) {
+        return new IllegalArgumentException("Malformed value of " + new String(fieldNames[field],
+                StandardCharsets.UTF_8) + ": " + new String(toChars(starts[field], ends[field])));
+    }
+
+    private IllegalArgumentException malformedLine(int position) {
+        return new IllegalArgumentException("Malformed line at chunk offset " + position);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.assignment.debt.dependency.file;
+
+/**
+ * Converts the parsed lines of an export file into model objects.
+ *
+ * @param <T> model type
+ * @author Sreeni Sannuthi
+ */
+public interface ExportRowMapper<T> {
+
+    /**
+     * @return names of the fields read by {@link #map(ExportRecord)}, as NDJSON keys and CSV column names.
+     * Fields are addressed by their index in this array.
+     */
+    String[] fieldNames();
+
+    T map(ExportRecord record);
+}
@@ -0,0 +1,144 @@
+package com.example.assignment.debt.dependency.file;
+
+import com.example.assignment.debt.dependency.PaymentDataSource;
+import com.example.assignment.debt.dependency.PaymentServiceCallStats;
+import com.example.assignment.debt.dependency.model.Debt;
+import com.example.assignment.debt.dependency.model.InstallmentFrequency;
+import com.example.assignment.debt.dependency.model.Payment;
+import com.example.assignment.debt.dependency.model.PaymentPlan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * {@link PaymentDataSource} reading local exports of the debts, payment_plans and payments, as NDJSON with the
+ * same fields as the PaymentService API or as CSV with those fields as columns. Rows are read with
+ * {@link ExportFileReader}, so the files are parsed in parallel from memory-mapped chunks, and payments can be
+ * streamed in file order without reading the whole file in memory.
+ *
+ * @author Sreeni Sannuthi
+ */
+public class FileExportDataSource implements PaymentDataSource {
+
+    private static final String[] INSTALLMENT_FREQUENCIES = {
+            InstallmentFrequency.WEEKLY.name(), InstallmentFrequency.BI_WEEKLY.name()};
+
+    private static final ExportRowMapper<Debt> DEBT_MAPPER = new ExportRowMapper<Debt>() {
+        private static final int ID = 0;
+        private static final int AMOUNT = 1;
+
+        @Override
+        public String[] fieldNames() {
+            return new String[]{"id", "amount"};
+        }
+
+        @Override
+        public Debt map(ExportRecord record) {
+            return Debt.builder()
+                    .id(record.getInt(ID))
+                    .amount(record.getDecimal(AMOUNT))
+                    .build();
+        }
+    };
+
+    private static final ExportRowMapper<PaymentPlan> PAYMENT_PLAN_MAPPER = new ExportRowMapper<PaymentPlan>() {
+        private static final int ID = 0;
+        private static final int DEBT_ID = 1;
+        private static final int AMOUNT_TO_PAY = 2;
+        private static final int INSTALLMENT_AMOUNT = 3;
+        private static final int INSTALLMENT_FREQUENCY = 4;
+        private static final int START_DATE = 5;
+
+        @Override
+        public String[] fieldNames() {
+            return new String[]{"id", "debt_id", "amount_to_pay", "installment_amount", "installment_frequency",
+                    "start_date"};
+        }
+
+        @Override
+        public PaymentPlan map(ExportRecord record) {
+            return PaymentPlan.builder()
+                    .id(record.getInt(ID))
+                    .debtId(record.getInt(DEBT_ID))
+                    .amountToPay(record.getDecimal(AMOUNT_TO_PAY))
+                    .installmentAmount(record.getDecimal(INSTALLMENT_AMOUNT))
+                    .installmentFrequency(record.getString(INSTALLMENT_FREQUENCY, INSTALLMENT_FREQUENCIES))
+                    .startDate(record.getDate(START_DATE))
+                    .build();
+        }
+    };
+
+    private static final ExportRowMapper<Payment> PAYMENT_MAPPER = new ExportRowMapper<Payment>() {
+        private static final int AMOUNT = 0;
+        private static final int PAYMENT_PLAN_ID = 1;
+        private static final int DATE = 2;
+
+        @Override
+        public String[] fieldNames() {
+            return new String[]{"amount", "payment_plan_id", "date"};
+        }
+
+        @Override
+        public Payment map(ExportRecord record) {
+            return Payment.builder()
+                    .amount(record.getDecimal(AMOUNT))
+                    .paymentPlanId(record.getInt(PAYMENT_PLAN_ID))
+                    .date(record.getDate(DATE))
+                    .build();
+        }
+    };
+
+    private final Path debtsFile;
+
+    private final Path paymentPlansFile;
+
+    private final Path paymentsFile;
+
+    private final ExportFileReader exportFileReader;
+
+    public FileExportDataSource(Path debtsFile, Path paymentPlansFile, Path paymentsFile,
+                                ExportFileReader exportFileReader) {
+        this.debtsFile = debtsFile;
+        this.paymentPlansFile = paymentPlansFile;
+        this.paymentsFile = paymentsFile;
+        this.exportFileReader = exportFileReader;
+    }
+
+    @Override
+    public List<Debt> getAllDebts() {
+        return read(debtsFile, DEBT_MAPPER);
+    }
+
+    @Override
+    public List<PaymentPlan> getAllPaymentPlans() {
+        return read(paymentPlansFile, PAYMENT_PLAN_MAPPER);
+    }
+
+    @Override
+    public List<Payment> getAllPayments() {
+        return read(paymentsFile, PAYMENT_MAPPER);
+    }
+
+    @Override
+    public Stream<Payment> streamAllPayments() {
+        try {
+            PaymentServiceCallStats.recordResponse(Files.size(paymentsFile), false);
+            return exportFileReader.stream(paymentsFile, PAYMENT_MAPPER);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read export file " + paymentsFile, e);
+        }
+    }
+
+    private <T> List<T> read(Path file, ExportRowMapper<T> mapper) {
+        try {
+            PaymentServiceCallStats.recordResponse(Files.size(file), false);
+            return exportFileReader.read(file, mapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read export file " + file, e);
+        }
+    }
+}
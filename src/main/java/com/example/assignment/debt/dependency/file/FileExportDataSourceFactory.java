@@ -0,0 +1,51 @@
+package com.example.assignment.debt.dependency.file;
+
+import com.example.assignment.debt.dependency.PaymentSourceProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the {@link FileExportDataSource} of a {@link PaymentSourceProperties.SourceType#FILE} source, for the
+ * {@code paymentService.*} data source as well as for {@code paymentSources.sources[n]}. Every data source parses
+ * its files on a thread pool of its own, shut down with this factory.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Component
+public class FileExportDataSourceFactory implements DisposableBean {
+
+    private final List<ExecutorService> exportParsers = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param source name, export files and parallelism of the source; {@code prefix} names the properties in
+     *               error messages
+     * @param prefix
+     * @return
+     */
+    public FileExportDataSource build(PaymentSourceProperties.Source source, String prefix) {
+        Assert.hasText(source.getDebtsFile(), prefix + ".debtsFile is required for " + source.getName());
+        Assert.hasText(source.getPaymentPlansFile(), prefix + ".paymentPlansFile is required for "
+                + source.getName());
+        Assert.hasText(source.getPaymentsFile(), prefix + ".paymentsFile is required for " + source.getName());
+        int parallelism = Math.max(1, source.getParallelism());
+        // Not the bulkhead, whose threads wait for the chunks while streaming the rows
+        ExecutorService exportParser = Executors.newFixedThreadPool(parallelism,
+                new CustomizableThreadFactory("payment-source-" + source.getName() + "-parser-"));
+        exportParsers.add(exportParser);
+        return new FileExportDataSource(Paths.get(source.getDebtsFile()), Paths.get(source.getPaymentPlansFile()),
+                Paths.get(source.getPaymentsFile()), new ExportFileReader(parallelism, exportParser));
+    }
+
+    @Override
+    public void destroy() {
+        exportParsers.forEach(ExecutorService::shutdownNow);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.assignment.debt.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Building of one of the maps joining debts, paymentPlans and payments.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Name("com.example.assignment.JoinBuild")
+@Label("Join Build")
+public class JoinBuildEvent extends RefreshStageEvent {
+
+    @Label("Join")
+    private String join;
+
+    @Label("External")
+    private boolean external;
+
+    @Label("Input Rows")
+    private int inputRows;
+
+    @Label("Entries")
+    private int entries;
+
+    public void setJoin(String join) {
+        this.join = join;
+    }
+
+    public void setExternal(boolean external) {
+        this.external = external;
+    }
+
+    public void setInputRows(int inputRows) {
+        this.inputRows = inputRows;
+    }
+
+    public void setEntries(int entries) {
+        this.entries = entries;
+    }
+}
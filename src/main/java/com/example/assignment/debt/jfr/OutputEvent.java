@@ -0,0 +1,30 @@
+package com.example.assignment.debt.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Serialization and printing of the debts summary.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Name("com.example.assignment.Output")
+@Label("Output")
+public class OutputEvent extends RefreshStageEvent {
+
+    @Label("Debts")
+    private int debts;
+
+    @Label("Output Size")
+    @DataAmount
+    private long bytes;
+
+    public void setDebts(int debts) {
+        this.debts = debts;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
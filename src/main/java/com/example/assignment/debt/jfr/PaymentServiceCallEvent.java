@@ -0,0 +1,53 @@
+package com.example.assignment.debt.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A single call to a payment source for its debts, payment_plans or payments, including decoding.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Name("com.example.assignment.PaymentServiceCall")
+@Label("Payment Service Call")
+public class PaymentServiceCallEvent extends RefreshStageEvent {
+
+    @Label("Endpoint")
+    private String endpoint;
+
+    @Label("Response Size")
+    @DataAmount
+    private long bytes;
+
+    @Label("Rows")
+    private int rows;
+
+    @Label("Cache Hit")
+    private boolean cacheHit;
+
+    @Label("Streamed")
+    @Description("Rows are decoded while the join reads them, so the call excludes decoding and has no rows")
+    private boolean streamed;
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    public void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    public void setStreamed(boolean streamed) {
+        this.streamed = streamed;
+    }
+}
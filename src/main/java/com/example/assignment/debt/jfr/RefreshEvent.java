@@ -0,0 +1,40 @@
+package com.example.assignment.debt.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A whole debts refresh, across all of its payment sources.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Name("com.example.assignment.Refresh")
+@Label("Debts Refresh")
+@Category({"Assignment", "Debts Refresh"})
+@StackTrace(false)
+public class RefreshEvent extends Event {
+
+    @Label("Refresh Id")
+    private long refreshId;
+
+    @Label("Sources")
+    private int sources;
+
+    @Label("Debts")
+    private int debts;
+
+    public void setRefreshId(long refreshId) {
+        this.refreshId = refreshId;
+    }
+
+    public void setSources(int sources) {
+        this.sources = sources;
+    }
+
+    public void setDebts(int debts) {
+        this.debts = debts;
+    }
+}
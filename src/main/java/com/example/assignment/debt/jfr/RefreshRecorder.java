@@ -0,0 +1,142 @@
+package com.example.assignment.debt.jfr;
+
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps a bounded in-process Java Flight Recorder recording of the refresh events and of allocations, and dumps
+ * it to {@code debtService.recording.dumpDirectory}:
+ * <ul>
+ *     <li>for every refresh taking longer than {@code debtService.recording.latencyThresholdMillis}</li>
+ *     <li>every {@code debtService.recording.retainedRefreshes} refreshes when
+ *     {@code debtService.recording.periodicDump} is set</li>
+ * </ul>
+ * The recording only retains the last {@code debtService.recording.retainedRefreshes} refreshes (JFR prunes
+ * whole chunks, so slightly more may be kept) and at most {@code debtService.recording.maxSizeBytes}.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Component
+public class RefreshRecorder implements InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshRecorder.class);
+
+    private final boolean enabled;
+    private final int retainedRefreshes;
+    private final long latencyThresholdMillis;
+    private final boolean periodicDump;
+    private final long maxSizeBytes;
+    private final Path dumpDirectory;
+
+    private final Deque<Instant> refreshStartTimes = new ArrayDeque<>();
+
+    private Recording recording;
+
+    private int refreshesSinceDump;
+
+    public RefreshRecorder(@Value("${debtService.recording.enabled:false}") boolean enabled,
+                           @Value("${debtService.recording.retainedRefreshes:10}") int retainedRefreshes,
+                           @Value("${debtService.recording.latencyThresholdMillis:0}") long latencyThresholdMillis,
+                           @Value("${debtService.recording.periodicDump:false}") boolean periodicDump,
+                           @Value("${debtService.recording.maxSizeBytes:67108864}") long maxSizeBytes,
+                           @Value("${debtService.recording.dumpDirectory:${java.io.tmpdir}/debt-service-recordings}")
+                                   String dumpDirectory) {
+        this.enabled = enabled;
+        this.retainedRefreshes = Math.max(1, retainedRefreshes);
+        this.latencyThresholdMillis = latencyThresholdMillis;
+        this.periodicDump = periodicDump;
+        this.maxSizeBytes = maxSizeBytes;
+        this.dumpDirectory = Paths.get(dumpDirectory);
+    }
+
+    @Override
+    public synchronized void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        recording = new Recording();
+        recording.setName("debt-service-refreshes");
+        recording.enable(RefreshEvent.class);
+        recording.enable(PaymentServiceCallEvent.class);
+        recording.enable(JoinBuildEvent.class);
+        recording.enable(SummaryLoopEvent.class);
+        recording.enable(OutputEvent.class);
+        // Allocation profiling; JFR ignores the events the running JVM does not have
+        recording.enable("jdk.ObjectAllocationSample").withStackTrace().with("throttle", "150/s");
+        recording.enable("jdk.ObjectAllocationOutsideTLAB").withStackTrace();
+        recording.enable("jdk.ThreadAllocationStatistics").withPeriod(Duration.ofSeconds(1));
+        recording.enable("jdk.GarbageCollection");
+        recording.enable("jdk.GCHeapSummary");
+        recording.setToDisk(true);
+        recording.setMaxSize(maxSizeBytes);
+        recording.start();
+        LOGGER.info("Recording debts refreshes, dumps go to {}", dumpDirectory);
+    }
+
+    /**
+     * To be called once a refresh completes, successfully or not.
+     * @param refreshId
+     * @param startTime
+     * @param duration
+     */
+    public synchronized void refreshCompleted(long refreshId, Instant startTime, Duration duration) {
+        if (recording == null) {
+            return;
+        }
+        refreshStartTimes.addLast(startTime);
+        while (refreshStartTimes.size() > retainedRefreshes) {
+            refreshStartTimes.removeFirst();
+        }
+        recording.setMaxAge(Duration.between(refreshStartTimes.getFirst(), Instant.now()));
+        refreshesSinceDump++;
+        if (latencyThresholdMillis > 0 && duration.toMillis() >= latencyThresholdMillis) {
+            dump("refresh-" + refreshId + "-slow");
+        } else if (periodicDump && refreshesSinceDump >= retainedRefreshes) {
+            dump("refresh-" + refreshId + "-last-" + retainedRefreshes);
+        }
+    }
+
+    /**
+     * Dumps the recording of the retained refreshes.
+     * @param name file name of the dump, without extension
+     * @return the dump file, or null when recording is disabled or the dump failed
+     */
+    public synchronized Path dump(String name) {
+        if (recording == null) {
+            return null;
+        }
+        Path dumpFile = dumpDirectory.resolve(name + ".jfr");
+        try {
+            Files.createDirectories(dumpDirectory);
+            recording.dump(dumpFile);
+            refreshesSinceDump = 0;
+            LOGGER.info("Dumped debts refresh recording to {}", dumpFile);
+            return dumpFile;
+        } catch (IOException e) {
+            LOGGER.warn("Could not dump debts refresh recording to {}", dumpFile, e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.assignment.debt.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Base of the Java Flight Recorder events of the stages of a debts refresh. Every stage event carries the id of
+ * the refresh and the payment source it belongs to, and the bytes allocated by the current thread while the
+ * stage ran.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Category({"Assignment", "Debts Refresh"})
+@StackTrace(false)
+public abstract class RefreshStageEvent extends Event {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    // JFR does not record private fields of event superclasses
+    @Label("Refresh Id")
+    protected long refreshId;
+
+    @Label("Source")
+    protected String source;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread running the stage")
+    @DataAmount
+    protected long allocatedBytes;
+
+    private transient long allocatedBytesAtStart;
+
+    /**
+     * Begins the timing of the stage.
+     * @param refreshId
+     * @param source
+     */
+    public void start(long refreshId, String source) {
+        this.refreshId = refreshId;
+        this.source = source;
+        if (isEnabled()) {
+            allocatedBytesAtStart = currentThreadAllocatedBytes();
+        }
+        begin();
+    }
+
+    /**
+     * Ends the timing of the stage and commits the event when it is enabled and over its threshold.
+     */
+    public void finish() {
+        end();
+        if (shouldCommit()) {
+            long allocatedBytesAtEnd = currentThreadAllocatedBytes();
+            allocatedBytes = allocatedBytesAtStart < 0 || allocatedBytesAtEnd < 0 ? -1
+                    : allocatedBytesAtEnd - allocatedBytesAtStart;
+            commit();
+        }
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.assignment.debt.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Computation of the debts summary from the joined data.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Name("com.example.assignment.SummaryLoop")
+@Label("Summary Loop")
+public class SummaryLoopEvent extends RefreshStageEvent {
+
+    @Label("Debts")
+    private int debts;
+
+    public void setDebts(int debts) {
+        this.debts = debts;
+    }
+}
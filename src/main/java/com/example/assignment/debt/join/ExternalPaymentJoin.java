@@ -0,0 +1,321 @@
+package com.example.assignment.debt.join;
+
+import com.example.assignment.debt.dependency.model.Payment;
+import com.example.assignment.debt.dependency.model.PaymentPlan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded-memory alternative to joining payments with their paymentPlans in a {@link HashMap}.
+ * <p>
+ * Payments are buffered up to the memory budget, sorted by paymentPlanId and spilled to run files in the
+ * temp directory. The runs are then k-way merged and the merged stream is walked against the paymentPlans
+ * sorted by id, so only one {@link PaymentTotal} per paymentPlan is ever held in memory. Run files are
+ * deleted once the join completes.
+ * <p>
+ * Payments without a paymentPlanId cannot belong to any paymentPlan and are skipped, and payments without a
+ * date do not take part in the last payment date.
+ *
+ * @author Sreeni Sannuthi
+ */
+public class ExternalPaymentJoin {
+
+    /**
+     * Rough heap footprint of a decoded {@link Payment} (object, BigDecimal, LocalDate, Integer and list slot),
+     * used to turn the memory budget into a number of payments per run.
+     */
+    static final int ESTIMATED_PAYMENT_BYTES = 128;
+
+    /**
+     * Maximum number of run files merged at once; more runs are first merged into intermediate runs.
+     */
+    static final int MAX_MERGE_FAN_IN = 64;
+
+    private static final String RUN_FILE_PREFIX = "payments-run-";
+    private static final String RUN_FILE_SUFFIX = ".bin";
+
+    private final int paymentsPerRun;
+
+    private final Path tempDirectory;
+
+    /**
+     * @param memoryBudgetBytes heap budget for the buffered payments of a single run
+     * @param tempDirectory     directory for the run files, created when missing, or null for the default temp
+     *                          directory
+     */
+    public ExternalPaymentJoin(long memoryBudgetBytes, Path tempDirectory) {
+        this.paymentsPerRun = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8,
+                memoryBudgetBytes / ESTIMATED_PAYMENT_BYTES));
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Joins the payments with the paymentPlans they were made for.
+     *
+     * @param paymentPlans
+     * @param payments
+     * @return map with key as paymentPlan id and value as the total of the payments made for that paymentPlan.
+     * PaymentPlans without payments are not present in the map.
+     */
+    public Map<Integer, PaymentTotal> join(List<PaymentPlan> paymentPlans, Iterable<Payment> payments) {
+        Map<Integer, PaymentTotal> paymentPlanIdPaymentTotalMap = new HashMap<>();
+        if (paymentPlans == null || payments == null) {
+            return paymentPlanIdPaymentTotalMap;
+        }
+        List<Path> runs = new ArrayList<>();
+        try {
+            if (tempDirectory != null) {
+                Files.createDirectories(tempDirectory);
+            }
+            spillSortedRuns(payments, runs);
+            while (runs.size() > MAX_MERGE_FAN_IN) {
+                List<Path> mergedRuns = new ArrayList<>();
+                for (int from = 0; from < runs.size(); from += MAX_MERGE_FAN_IN) {
+                    List<Path> group = runs.subList(from, Math.min(runs.size(), from + MAX_MERGE_FAN_IN));
+                    mergedRuns.add(mergeRuns(group));
+                    deleteRuns(group);
+                }
+                runs = mergedRuns;
+            }
+            List<PaymentPlan> sortedPaymentPlans = paymentPlans.stream()
+                    .filter(paymentPlan -> paymentPlan != null && paymentPlan.getId() != null)
+                    .sorted(Comparator.comparing(PaymentPlan::getId))
+                    .collect(Collectors.toList());
+            try (RunMerger merger = new RunMerger(runs)) {
+                mergeJoin(sortedPaymentPlans, merger, paymentPlanIdPaymentTotalMap);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("External payment join failed", e);
+        } finally {
+            deleteRuns(runs);
+        }
+        return paymentPlanIdPaymentTotalMap;
+    }
+
+    private void spillSortedRuns(Iterable<Payment> payments, List<Path> runs) throws IOException {
+        List<Payment> buffer = new ArrayList<>(Math.min(paymentsPerRun, 1 << 16));
+        for (Payment payment : payments) {
+            if (payment == null || payment.getPaymentPlanId() == null) {
+                continue;
+            }
+            buffer.add(payment);
+            if (buffer.size() >= paymentsPerRun) {
+                runs.add(writeRun(buffer));
+                buffer.clear();
+            }
+        }
+        if (!buffer.isEmpty()) {
+            runs.add(writeRun(buffer));
+        }
+    }
+
+    private Path writeRun(List<Payment> buffer) throws IOException {
+        // List.sort is stable, so payments of a paymentPlan keep their original order within a run
+        buffer.sort(Comparator.comparing(Payment::getPaymentPlanId));
+        Path run = createRunFile();
+        try (DataOutputStream out = openRunForWrite(run)) {
+            for (Payment payment : buffer) {
+                BigDecimal amount = payment.getAmount();
+                writeRecord(out, payment.getPaymentPlanId(), amount.unscaledValue().toByteArray(), amount.scale(),
+                        payment.getDate() == null ? null : payment.getDate().toEpochDay());
+            }
+        }
+        return run;
+    }
+
+    private Path mergeRuns(List<Path> group) throws IOException {
+        Path run = createRunFile();
+        try (RunMerger merger = new RunMerger(group); DataOutputStream out = openRunForWrite(run)) {
+            while (merger.hasNext()) {
+                RunReader reader = merger.next();
+                writeRecord(out, reader.paymentPlanId, reader.unscaledAmount, reader.scale,
+                        reader.hasDate ? reader.epochDay : null);
+                merger.advance(reader);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Walks the merged payments (sorted by paymentPlanId) against the paymentPlans (sorted by id) and
+     * aggregates the payments of every paymentPlan present on both sides.
+     */
+    private void mergeJoin(List<PaymentPlan> sortedPaymentPlans, RunMerger merger,
+                           Map<Integer, PaymentTotal> paymentPlanIdPaymentTotalMap) throws IOException {
+        Iterator<PaymentPlan> paymentPlanIterator = sortedPaymentPlans.iterator();
+        PaymentPlan paymentPlan = paymentPlanIterator.hasNext() ? paymentPlanIterator.next() : null;
+        while (paymentPlan != null && merger.hasNext()) {
+            RunReader reader = merger.next();
+            int paymentPlanId = reader.paymentPlanId;
+            while (paymentPlan != null && paymentPlan.getId() < paymentPlanId) {
+                paymentPlan = paymentPlanIterator.hasNext() ? paymentPlanIterator.next() : null;
+            }
+            boolean matched = paymentPlan != null && paymentPlan.getId() == paymentPlanId;
+            BigDecimal paidAmount = null;
+            LocalDate lastPaymentDate = null;
+            while (reader != null && reader.paymentPlanId == paymentPlanId) {
+                if (matched) {
+                    BigDecimal amount = new BigDecimal(new BigInteger(reader.unscaledAmount), reader.scale);
+                    paidAmount = paidAmount == null ? amount : paidAmount.add(amount);
+                    if (reader.hasDate) {
+                        LocalDate date = LocalDate.ofEpochDay(reader.epochDay);
+                        if (lastPaymentDate == null || date.compareTo(lastPaymentDate) > 0) {
+                            lastPaymentDate = date;
+                        }
+                    }
+                }
+                merger.advance(reader);
+                reader = merger.hasNext() ? merger.next() : null;
+            }
+            if (matched) {
+                paymentPlanIdPaymentTotalMap.put(paymentPlanId, new PaymentTotal(paidAmount, lastPaymentDate));
+            }
+        }
+    }
+
+    private Path createRunFile() throws IOException {
+        return tempDirectory == null ? Files.createTempFile(RUN_FILE_PREFIX, RUN_FILE_SUFFIX)
+                : Files.createTempFile(tempDirectory, RUN_FILE_PREFIX, RUN_FILE_SUFFIX);
+    }
+
+    private static DataOutputStream openRunForWrite(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)));
+    }
+
+    private static void writeRecord(DataOutputStream out, int paymentPlanId, byte[] unscaledAmount, int scale,
+                                    Long epochDay) throws IOException {
+        out.writeInt(paymentPlanId);
+        out.writeInt(scale);
+        out.writeShort(unscaledAmount.length);
+        out.write(unscaledAmount);
+        out.writeBoolean(epochDay != null);
+        out.writeLong(epochDay == null ? 0L : epochDay);
+    }
+
+    private static void deleteRuns(List<Path> runs) {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException ignored) {
+                // Best effort, the file lives in a temp directory
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of a single run file, exposing the current record as fields to avoid an object per
+     * payment during the merge.
+     */
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        private final int runIndex;
+        private int paymentPlanId;
+        private int scale;
+        private byte[] unscaledAmount;
+        private boolean hasDate;
+        private long epochDay;
+
+        private RunReader(Path run, int runIndex) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+            this.runIndex = runIndex;
+        }
+
+        private boolean readNext() throws IOException {
+            try {
+                paymentPlanId = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            scale = in.readInt();
+            unscaledAmount = new byte[in.readUnsignedShort()];
+            in.readFully(unscaledAmount);
+            hasDate = in.readBoolean();
+            epochDay = in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * K-way merge of run files ordered by paymentPlanId, ties broken by run order so that the merged stream
+     * keeps the original order of payments.
+     */
+    private static final class RunMerger implements Closeable {
+        private final List<RunReader> readers = new ArrayList<>();
+        private final PriorityQueue<RunReader> heads = new PriorityQueue<>(
+                Comparator.<RunReader>comparingInt(reader -> reader.paymentPlanId)
+                        .thenComparingInt(reader -> reader.runIndex));
+
+        private RunMerger(List<Path> runs) throws IOException {
+            try {
+                for (Path run : runs) {
+                    RunReader reader = new RunReader(run, readers.size());
+                    readers.add(reader);
+                    if (reader.readNext()) {
+                        heads.add(reader);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        private RunReader next() {
+            return heads.peek();
+        }
+
+        /**
+         * Moves past the current record of the given reader, which must be the one returned by {@link #next()}.
+         */
+        private void advance(RunReader reader) throws IOException {
+            heads.poll();
+            if (reader.readNext()) {
+                heads.add(reader);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (RunReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
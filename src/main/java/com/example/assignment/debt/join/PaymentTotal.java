@@ -0,0 +1,24 @@
+package com.example.assignment.debt.join;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Aggregate of all the payments made for a single paymentPlan, which is everything the debt summary needs
+ * from the individual payments.
+ *
+ * @author Sreeni Sannuthi
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class PaymentTotal {
+    private final BigDecimal paidAmount;
+    private final LocalDate lastPaymentDate;
+}
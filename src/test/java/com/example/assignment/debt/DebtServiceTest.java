@@ -2,22 +2,38 @@ package com.example.assignment.debt;
 
 import com.example.assignment.debt.dependency.PaymentServiceClient;
 import com.example.assignment.debt.dependency.PaymentServiceClientException;
+import com.example.assignment.debt.dependency.PaymentServiceDataSource;
+import com.example.assignment.debt.dependency.PaymentSource;
+import com.example.assignment.debt.dependency.PaymentSourceRegistry;
 import com.example.assignment.debt.dependency.model.Debt;
 import com.example.assignment.debt.dependency.model.InstallmentFrequency;
 import com.example.assignment.debt.dependency.model.Payment;
 import com.example.assignment.debt.dependency.model.PaymentPlan;
+import com.example.assignment.debt.jfr.RefreshRecorder;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -30,9 +46,20 @@ class DebtServiceTest {
     @Mock
     private PaymentServiceClient paymentServiceClient;
 
-    @InjectMocks
+    @Mock
+    private PaymentSourceRegistry paymentSourceRegistry;
+
+    @Mock
+    private RefreshRecorder refreshRecorder;
+
     private DebtService debtService;
 
+    @BeforeEach
+    void createDebtService() {
+        debtService = new DebtService(new PaymentServiceDataSource(paymentServiceClient), paymentSourceRegistry,
+                refreshRecorder);
+    }
+
     @Test
     void testGetDebtsNullResponse() throws PaymentServiceClientException, JsonProcessingException {
         Mockito.when(paymentServiceClient.getAllDebts()).thenReturn(null);
@@ -246,4 +273,227 @@ class DebtServiceTest {
         assertTrue("2021-05-15".equals(debts.get(0).getNextPaymentDueDate()));
         assertTrue(paymentPlan.getAmountToPay().equals(debts.get(0).getRemainingAmount()));
     }
-}
\ No newline at end of file
+
+    /**
+     * External sort-merge join with a memory budget small enough to spill several levels of run files must
+     * produce exactly the same debts as the in-memory join.
+     * @throws PaymentServiceClientException
+     * @throws JsonProcessingException
+     */
+    @Test
+    void testGetDebtsWithExternalJoinMatchesInMemoryJoin() throws PaymentServiceClientException,
+            JsonProcessingException {
+        Random random = new Random(42);
+        List<Debt> paymentServiceDebts = new ArrayList<>();
+        List<PaymentPlan> paymentPlans = new ArrayList<>();
+        List<Payment> payments = new ArrayList<>();
+        for (int debtId = 0; debtId < 200; debtId++) {
+            paymentServiceDebts.add(Debt.builder().id(debtId).amount(BigDecimal.valueOf(1000 + debtId, 2)).build());
+            if (debtId % 4 != 0) {
+                paymentPlans.add(PaymentPlan.builder()
+                        .amountToPay(BigDecimal.valueOf(500 + debtId, 1))
+                        .debtId(debtId)
+                        .id(1000 - debtId)
+                        .installmentAmount(BigDecimal.TEN)
+                        .installmentFrequency(debtId % 2 == 0 ? InstallmentFrequency.WEEKLY.name()
+                                : InstallmentFrequency.BI_WEEKLY.name())
+                        .startDate(LocalDate.of(2021, 5, 1).plusDays(debtId))
+                        .build());
+            }
+        }
+        for (int i = 0; i < 5000; i++) {
+            payments.add(Payment.builder()
+                    .amount(BigDecimal.valueOf(random.nextInt(500), random.nextInt(3)))
+                    .paymentPlanId(800 + random.nextInt(250))
+                    .date(LocalDate.of(2021, 5, 1).plusDays(random.nextInt(365))).build());
+        }
+        Mockito.when(paymentServiceClient.getAllDebts()).thenReturn(paymentServiceDebts);
+        Mockito.when(paymentServiceClient.getAllPaymentPlans()).thenReturn(paymentPlans);
+        Mockito.when(paymentServiceClient.getAllPayments()).thenReturn(payments);
+        List<com.example.assignment.debt.model.Debt> inMemoryDebts = debtService.getAllDebts();
+
+        ReflectionTestUtils.setField(debtService, "externalJoinEnabled", true);
+        ReflectionTestUtils.setField(debtService, "externalJoinMemoryBudgetBytes", 128L);
+        Mockito.when(paymentServiceClient.streamAllPayments()).thenAnswer(invocation -> payments.stream());
+        List<com.example.assignment.debt.model.Debt> externalJoinDebts = debtService.getAllDebts();
+
+        //Verification
+        assertEquals(200, externalJoinDebts.size());
+        assertEquals(inMemoryDebts, externalJoinDebts);
+    }
+
+    /**
+     * A configured temp directory for the run files of the external join is created when it does not exist yet.
+     * @param tempDirectory
+     * @throws PaymentServiceClientException
+     * @throws JsonProcessingException
+     */
+    @Test
+    void testGetDebtsWithExternalJoinCreatesTempDirectory(@TempDir Path tempDirectory)
+            throws PaymentServiceClientException, JsonProcessingException {
+        Path runDirectory = tempDirectory.resolve("external-join").resolve("runs");
+        Mockito.when(paymentServiceClient.getAllDebts()).thenReturn(Arrays.asList(
+                Debt.builder().id(1).amount(BigDecimal.TEN).build()));
+        Mockito.when(paymentServiceClient.getAllPaymentPlans()).thenReturn(Arrays.asList(PaymentPlan.builder()
+                .amountToPay(BigDecimal.TEN)
+                .debtId(1)
+                .id(11)
+                .installmentAmount(BigDecimal.valueOf(5))
+                .installmentFrequency(InstallmentFrequency.WEEKLY.name())
+                .startDate(LocalDate.of(2021, 5, 1))
+                .build()));
+        Mockito.when(paymentServiceClient.streamAllPayments()).thenAnswer(invocation -> Stream.of(
+                Payment.builder().amount(BigDecimal.valueOf(5)).paymentPlanId(11).date(LocalDate.of(2021, 5, 8))
+                        .build()));
+        ReflectionTestUtils.setField(debtService, "externalJoinEnabled", true);
+        ReflectionTestUtils.setField(debtService, "externalJoinTempDirectory", runDirectory.toString());
+        List<com.example.assignment.debt.model.Debt> debts = debtService.getAllDebts();
+
+        //Verification
+        assertTrue(Files.isDirectory(runDirectory));
+        assertEquals(1, debts.size());
+        assertTrue(BigDecimal.valueOf(5).equals(debts.get(0).getRemainingAmount()));
+    }
+
+    /**
+     * With the external join, payments are streamed from the source into the join and never fetched as a list.
+     * The 200,000 payments are generated lazily by the stream, so none of them exist before the join reads them,
+     * and the memory budget only fits 2048 of them per run.
+     * @throws PaymentServiceClientException
+     * @throws JsonProcessingException
+     */
+    @Test
+    void testGetDebtsWithExternalJoinStreamsPayments() throws PaymentServiceClientException,
+            JsonProcessingException {
+        int paymentPlanCount = 100;
+        int paymentsPerPaymentPlan = 2000;
+        List<Debt> paymentServiceDebts = new ArrayList<>();
+        List<PaymentPlan> paymentPlans = new ArrayList<>();
+        for (int debtId = 0; debtId < paymentPlanCount; debtId++) {
+            paymentServiceDebts.add(Debt.builder().id(debtId).amount(BigDecimal.valueOf(20000)).build());
+            paymentPlans.add(PaymentPlan.builder()
+                    .amountToPay(BigDecimal.valueOf(10000))
+                    .debtId(debtId)
+                    .id(1000 + debtId)
+                    .installmentAmount(BigDecimal.ONE)
+                    .installmentFrequency(InstallmentFrequency.WEEKLY.name())
+                    .startDate(LocalDate.of(2000, 1, 1))
+                    .build());
+        }
+        int[] streamedPayments = {0};
+        Mockito.when(paymentServiceClient.getAllDebts()).thenReturn(paymentServiceDebts);
+        Mockito.when(paymentServiceClient.getAllPaymentPlans()).thenReturn(paymentPlans);
+        Mockito.when(paymentServiceClient.streamAllPayments()).thenAnswer(invocation ->
+                IntStream.range(0, paymentPlanCount * paymentsPerPaymentPlan).mapToObj(i -> {
+                    streamedPayments[0]++;
+                    return Payment.builder()
+                            .amount(BigDecimal.ONE)
+                            .paymentPlanId(1000 + i % paymentPlanCount)
+                            .date(LocalDate.of(2000, 1, 1).plusDays(i / paymentPlanCount)).build();
+                }));
+        ReflectionTestUtils.setField(debtService, "externalJoinEnabled", true);
+        ReflectionTestUtils.setField(debtService, "externalJoinMemoryBudgetBytes", 256L * 1024);
+        List<com.example.assignment.debt.model.Debt> debts = debtService.getAllDebts();
+
+        //Verification
+        Mockito.verify(paymentServiceClient, Mockito.never()).getAllPayments();
+        assertEquals(paymentPlanCount * paymentsPerPaymentPlan, streamedPayments[0]);
+        assertEquals(paymentPlanCount, debts.size());
+        String nextPaymentDueDate = LocalDate.of(2000, 1, 1).plusDays(paymentsPerPaymentPlan - 1 + 7).toString();
+        for (com.example.assignment.debt.model.Debt debt : debts) {
+            assertTrue(debt.isInPaymentPlan());
+            assertTrue(BigDecimal.valueOf(8000).equals(debt.getRemainingAmount()));
+            assertEquals(nextPaymentDueDate, debt.getNextPaymentDueDate());
+        }
+    }
+
+    /**
+     * Debts of every configured payment source are aggregated; a failing source only leaves out its own debts
+     * and is not reported as refreshed.
+     * @throws PaymentServiceClientException
+     * @throws JsonProcessingException
+     */
+    @Test
+    void testGetDebtsFromMultipleSourcesWithFailingSource() throws PaymentServiceClientException,
+            JsonProcessingException {
+        PaymentServiceClient usPaymentServiceClient = Mockito.mock(PaymentServiceClient.class);
+        PaymentServiceClient euPaymentServiceClient = Mockito.mock(PaymentServiceClient.class);
+        ExecutorService usBulkhead = Executors.newFixedThreadPool(3);
+        ExecutorService euBulkhead = Executors.newFixedThreadPool(1);
+        try {
+            Mockito.when(usPaymentServiceClient.getAllDebts())
+                    .thenReturn(Arrays.asList(Debt.builder().id(1).amount(BigDecimal.TEN).build()));
+            Mockito.when(euPaymentServiceClient.getAllDebts())
+                    .thenThrow(new PaymentServiceClientException("404", "Not Found"));
+            Mockito.when(paymentSourceRegistry.getSources()).thenReturn(Arrays.asList(
+                    new PaymentSource("us", new PaymentServiceDataSource(usPaymentServiceClient), usBulkhead),
+                    new PaymentSource("eu", new PaymentServiceDataSource(euPaymentServiceClient), euBulkhead)));
+            ReflectionTestUtils.setField(debtService, "sourceRefreshTimeoutMillis", 10_000L);
+            List<com.example.assignment.debt.model.Debt> debts = debtService.getAllDebts();
+
+            //Verification
+            assertEquals(1, debts.size());
+            assertEquals(1, debts.get(0).getId());
+            assertTrue(BigDecimal.TEN.equals(debts.get(0).getRemainingAmount()));
+            assertTrue(debtService.getSourceRefreshTimes().containsKey("us"));
+            assertFalse(debtService.getSourceRefreshTimes().containsKey("eu"));
+            Mockito.verifyNoInteractions(paymentServiceClient);
+        } finally {
+            usBulkhead.shutdownNow();
+            euBulkhead.shutdownNow();
+        }
+    }
+
+    /**
+     * A source still refreshing at the deadline does not hold back the refresh: the debts of the other sources
+     * are returned, the slow source is left out as stale, and it is not refreshed again until it completes.
+     * @throws PaymentServiceClientException
+     * @throws JsonProcessingException
+     * @throws InterruptedException
+     */
+    @Test
+    void testGetDebtsFromMultipleSourcesWithSlowSource() throws PaymentServiceClientException,
+            JsonProcessingException, InterruptedException {
+        PaymentServiceClient usPaymentServiceClient = Mockito.mock(PaymentServiceClient.class);
+        PaymentServiceClient euPaymentServiceClient = Mockito.mock(PaymentServiceClient.class);
+        ExecutorService usBulkhead = Executors.newFixedThreadPool(3);
+        ExecutorService euBulkhead = Executors.newFixedThreadPool(3);
+        CountDownLatch euResponds = new CountDownLatch(1);
+        try {
+            Mockito.when(usPaymentServiceClient.getAllDebts())
+                    .thenReturn(Arrays.asList(Debt.builder().id(1).amount(BigDecimal.TEN).build()));
+            Mockito.when(euPaymentServiceClient.getAllDebts()).thenAnswer(invocation -> {
+                euResponds.await();
+                return Arrays.asList(Debt.builder().id(2).amount(BigDecimal.ONE).build());
+            });
+            Mockito.when(paymentSourceRegistry.getSources()).thenReturn(Arrays.asList(
+                    new PaymentSource("us", new PaymentServiceDataSource(usPaymentServiceClient), usBulkhead),
+                    new PaymentSource("eu", new PaymentServiceDataSource(euPaymentServiceClient), euBulkhead)));
+            ReflectionTestUtils.setField(debtService, "sourceRefreshTimeoutMillis", 2_000L);
+            long startTime = System.nanoTime();
+            List<com.example.assignment.debt.model.Debt> firstDebts = debtService.getAllDebts();
+            List<com.example.assignment.debt.model.Debt> secondDebts = debtService.getAllDebts();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+            //Verification
+            assertEquals(1, firstDebts.size());
+            assertEquals(1, firstDebts.get(0).getId());
+            assertEquals(firstDebts, secondDebts);
+            assertTrue(elapsedMillis < 8_000);
+            assertTrue(debtService.getSourceRefreshTimes().containsKey("us"));
+            assertFalse(debtService.getSourceRefreshTimes().containsKey("eu"));
+            Mockito.verify(euPaymentServiceClient, Mockito.times(1)).getAllDebts();
+
+            euResponds.countDown();
+            ReflectionTestUtils.setField(debtService, "sourceRefreshTimeoutMillis", 10_000L);
+            List<com.example.assignment.debt.model.Debt> thirdDebts = debtService.getAllDebts();
+            assertEquals(2, thirdDebts.size());
+            assertEquals(2, thirdDebts.get(1).getId());
+            assertTrue(debtService.getSourceRefreshTimes().containsKey("eu"));
+        } finally {
+            euResponds.countDown();
+            usBulkhead.shutdownNow();
+            euBulkhead.shutdownNow();
+        }
+    }
+}
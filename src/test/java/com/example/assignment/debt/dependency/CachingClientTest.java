@@ -0,0 +1,247 @@
+package com.example.assignment.debt.dependency;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CachingClientTest {
+
+    private static final String URL = "https://payments.example.com/debts";
+    private static final byte[] BODY = "[{\"id\":0,\"amount\":123.46}]".getBytes(StandardCharsets.UTF_8);
+    private static final long MAX_BUFFERED_BODY_BYTES = 1 << 20;
+
+    @TempDir
+    Path cacheDirectory;
+
+    /**
+     * First response is stored with its ETag; the next request is conditional and its 304 is answered from the
+     * cache as a 200 with the cached body and content type.
+     * @throws IOException
+     */
+    @Test
+    void testNotModifiedResponseServedFromCache() throws IOException {
+        List<Request> sentRequests = new ArrayList<>();
+        List<Response.Builder> responses = new ArrayList<>();
+        responses.add(Response.builder().status(200).reason("OK")
+                .headers(headers("ETag", "\"v1\"", "Content-Type", "application/json"))
+                .body(BODY));
+        responses.add(Response.builder().status(304).reason("Not Modified")
+                .headers(headers("ETag", "\"v1\"")));
+        Client delegate = (request, options) -> {
+            sentRequests.add(request);
+            return responses.remove(0).request(request).build();
+        };
+        CachingClient cachingClient = new CachingClient(delegate, new HttpResponseCache(cacheDirectory, true),
+                MAX_BUFFERED_BODY_BYTES);
+
+        Response first = cachingClient.execute(getRequest(), options());
+        Response second = cachingClient.execute(getRequest(), options());
+
+        //Verification
+        assertNull(CachingClient.firstOrNull(sentRequests.get(0).headers(), "If-None-Match"));
+        assertEquals("\"v1\"", CachingClient.firstOrNull(sentRequests.get(1).headers(), "If-None-Match"));
+        assertEquals(CachingClient.CACHE_MISS, CachingClient.firstOrNull(first.headers(), CachingClient.CACHE_HEADER));
+        assertArrayEquals(BODY, Util.toByteArray(first.body().asInputStream()));
+        assertEquals(200, second.status());
+        assertEquals(CachingClient.CACHE_HIT, CachingClient.firstOrNull(second.headers(), CachingClient.CACHE_HEADER));
+        assertEquals("application/json", CachingClient.firstOrNull(second.headers(), "Content-Type"));
+        assertArrayEquals(BODY, Util.toByteArray(second.body().asInputStream()));
+    }
+
+    /**
+     * When the cached body was deleted, e.g. by a temp directory cleaner, the 304 is not returned: the entry is
+     * evicted and the request is repeated without validators in the same call.
+     * @throws IOException
+     */
+    @Test
+    void testNotModifiedResponseWithLostBodyFetchedAgain() throws IOException {
+        List<Request> sentRequests = new ArrayList<>();
+        List<Response.Builder> responses = new ArrayList<>();
+        responses.add(Response.builder().status(200).reason("OK")
+                .headers(headers("ETag", "\"v1\"", "Content-Type", "application/json"))
+                .body(BODY));
+        responses.add(Response.builder().status(304).reason("Not Modified")
+                .headers(headers("ETag", "\"v1\"")));
+        responses.add(Response.builder().status(200).reason("OK")
+                .headers(headers("ETag", "\"v1\"", "Content-Type", "application/json"))
+                .body(BODY));
+        Client delegate = (request, options) -> {
+            sentRequests.add(request);
+            return responses.remove(0).request(request).build();
+        };
+        CachingClient cachingClient = new CachingClient(delegate, new HttpResponseCache(cacheDirectory, true),
+                MAX_BUFFERED_BODY_BYTES);
+
+        cachingClient.execute(getRequest(), options());
+        try (DirectoryStream<Path> bodyFiles = Files.newDirectoryStream(cacheDirectory, "*.body")) {
+            for (Path bodyFile : bodyFiles) {
+                Files.delete(bodyFile);
+            }
+        }
+        Response second = cachingClient.execute(getRequest(), options());
+
+        //Verification
+        assertEquals(3, sentRequests.size());
+        assertEquals("\"v1\"", CachingClient.firstOrNull(sentRequests.get(1).headers(), "If-None-Match"));
+        assertNull(CachingClient.firstOrNull(sentRequests.get(2).headers(), "If-None-Match"));
+        assertEquals(200, second.status());
+        assertEquals(CachingClient.CACHE_MISS, CachingClient.firstOrNull(second.headers(), CachingClient.CACHE_HEADER));
+        assertArrayEquals(BODY, Util.toByteArray(second.body().asInputStream()));
+    }
+
+    /**
+     * A 304 without a cache entry to answer it with, e.g. from a proxy, is not returned either: the request is
+     * repeated without validators in the same call.
+     * @throws IOException
+     */
+    @Test
+    void testNotModifiedResponseWithoutEntryFetchedAgain() throws IOException {
+        List<Request> sentRequests = new ArrayList<>();
+        List<Response.Builder> responses = new ArrayList<>();
+        responses.add(Response.builder().status(304).reason("Not Modified")
+                .headers(headers("ETag", "\"v1\"")));
+        responses.add(Response.builder().status(200).reason("OK")
+                .headers(headers("ETag", "\"v1\"", "Content-Type", "application/json"))
+                .body(BODY));
+        Client delegate = (request, options) -> {
+            sentRequests.add(request);
+            return responses.remove(0).request(request).build();
+        };
+        CachingClient cachingClient = new CachingClient(delegate, new HttpResponseCache(cacheDirectory, true),
+                MAX_BUFFERED_BODY_BYTES);
+
+        Response response = cachingClient.execute(getRequest(), options());
+
+        //Verification
+        assertEquals(2, sentRequests.size());
+        assertNull(CachingClient.firstOrNull(sentRequests.get(1).headers(), "If-None-Match"));
+        assertEquals(200, response.status());
+        assertEquals(CachingClient.CACHE_MISS,
+                CachingClient.firstOrNull(response.headers(), CachingClient.CACHE_HEADER));
+        assertArrayEquals(BODY, Util.toByteArray(response.body().asInputStream()));
+    }
+
+    /**
+     * A cached response with an unchanged validator is decoded only once.
+     * @throws IOException
+     */
+    @Test
+    void testUnchangedResponseDecodedOnce() throws IOException {
+        int[] decodeCount = {0};
+        CachingDecoder cachingDecoder = new CachingDecoder((response, type) -> {
+            decodeCount[0]++;
+            return new ArrayList<>(Collections.singletonList("debt"));
+        }, new HttpResponseCache(cacheDirectory, true));
+        Response response = Response.builder().status(200).reason("OK")
+                .headers(headers("ETag", "\"v1\"", CachingClient.CACHE_HEADER, CachingClient.CACHE_HIT))
+                .request(getRequest())
+                .body(BODY)
+                .build();
+
+        Object first = cachingDecoder.decode(response, List.class);
+        Object second = cachingDecoder.decode(response, List.class);
+
+        //Verification
+        assertEquals(1, decodeCount[0]);
+        assertSame(first, second);
+    }
+
+    /**
+     * Bodies larger than the buffering limit are written to the cache while read and served from the cache file,
+     * both for the fresh response and for the 304 after it, and their decoded results are not kept.
+     * @throws IOException
+     */
+    @Test
+    void testLargeResponseStreamedFromCache() throws IOException {
+        List<Response.Builder> responses = new ArrayList<>();
+        responses.add(Response.builder().status(200).reason("OK")
+                .headers(headers("ETag", "\"v1\"", "Content-Type", "application/json"))
+                .body(BODY));
+        responses.add(Response.builder().status(304).reason("Not Modified")
+                .headers(headers("ETag", "\"v1\"")));
+        Client delegate = (request, options) -> responses.remove(0).request(request).build();
+        HttpResponseCache cache = new HttpResponseCache(cacheDirectory, true);
+        CachingClient cachingClient = new CachingClient(delegate, cache, BODY.length - 1);
+        int[] decodeCount = {0};
+        CachingDecoder cachingDecoder = new CachingDecoder((response, type) -> {
+            decodeCount[0]++;
+            return Util.toByteArray(response.body().asInputStream());
+        }, cache);
+
+        Response first = cachingClient.execute(getRequest(), options());
+        Object firstDecoded = cachingDecoder.decode(first, byte[].class);
+        Response second = cachingClient.execute(getRequest(), options());
+        Object secondDecoded = cachingDecoder.decode(second, byte[].class);
+
+        //Verification
+        assertFalse(first.body().isRepeatable());
+        assertEquals(String.valueOf(BODY.length), CachingClient.firstOrNull(first.headers(), "Content-Length"));
+        assertArrayEquals(BODY, (byte[]) firstDecoded);
+        assertFalse(second.body().isRepeatable());
+        assertEquals(CachingClient.CACHE_HIT, CachingClient.firstOrNull(second.headers(), CachingClient.CACHE_HEADER));
+        assertArrayEquals(BODY, (byte[]) secondDecoded);
+        assertEquals(2, decodeCount[0]);
+    }
+
+    /**
+     * Without decoded result reuse, e.g. along with the external payment join, every response is decoded again.
+     * @throws IOException
+     */
+    @Test
+    void testDecodedResultsNotReusedWhenDisabled() throws IOException {
+        int[] decodeCount = {0};
+        CachingDecoder cachingDecoder = new CachingDecoder((response, type) -> {
+            decodeCount[0]++;
+            return new ArrayList<>(Collections.singletonList("debt"));
+        }, new HttpResponseCache(cacheDirectory, false));
+        Response response = Response.builder().status(200).reason("OK")
+                .headers(headers("ETag", "\"v1\"", CachingClient.CACHE_HEADER, CachingClient.CACHE_HIT))
+                .request(getRequest())
+                .body(BODY)
+                .build();
+
+        cachingDecoder.decode(response, List.class);
+        cachingDecoder.decode(response, List.class);
+
+        //Verification
+        assertEquals(2, decodeCount[0]);
+    }
+
+    private static Request getRequest() {
+        return Request.create(Request.HttpMethod.GET, URL,
+                headers("Accept", "application/json"), null, StandardCharsets.UTF_8, null);
+    }
+
+    private static Request.Options options() {
+        return new Request.Options(500, 500);
+    }
+
+    private static Map<String, Collection<String>> headers(String... namesAndValues) {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.put(namesAndValues[i], Collections.singletonList(namesAndValues[i + 1]));
+        }
+        return headers;
+    }
+}
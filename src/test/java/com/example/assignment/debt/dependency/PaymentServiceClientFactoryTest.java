@@ -0,0 +1,91 @@
+package com.example.assignment.debt.dependency;
+
+import com.example.assignment.debt.dependency.model.Debt;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import feign.Request;
+import feign.Retryer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PaymentServiceClientFactoryTest {
+
+    private static final byte[] BODY = "[{\"id\":0,\"amount\":123.46}]".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path cacheDirectory;
+
+    private HttpServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * A 304 goes through Feign and {@link PaymentServiceErrorDecoder} without failing the call, whether it can be
+     * answered from the cache or not: one sent to a request without validators, e.g. by a proxy, makes the client
+     * fetch the debts again, and one sent to a conditional request is answered with the cached debts.
+     * @throws Exception
+     */
+    @Test
+    void testNotModifiedResponsesDoNotFailCalls() throws Exception {
+        List<String> ifNoneMatchHeaders = new CopyOnWriteArrayList<>();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/debts", exchange -> {
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifNoneMatchHeaders.add(String.valueOf(ifNoneMatch));
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if (ifNoneMatchHeaders.size() == 1 || ifNoneMatch != null) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, BODY.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(BODY);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        PaymentServiceClient paymentServiceClient = buildClient();
+
+        List<Debt> first = paymentServiceClient.getAllDebts();
+        List<Debt> second = paymentServiceClient.getAllDebts();
+
+        //Verification
+        List<Debt> expectedDebts = Collections.singletonList(
+                Debt.builder().id(0).amount(new BigDecimal("123.46")).build());
+        assertEquals(expectedDebts, first);
+        assertEquals(expectedDebts, second);
+        assertEquals(3, ifNoneMatchHeaders.size());
+        assertEquals("null", ifNoneMatchHeaders.get(1));
+        assertEquals("\"v1\"", ifNoneMatchHeaders.get(2));
+    }
+
+    private PaymentServiceClient buildClient() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        PaymentServiceClientFactory paymentServiceClientFactory = new PaymentServiceClientFactory(
+                () -> new HttpMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper)), objectMapper,
+                cacheDirectory.toString(), true, 1 << 20);
+        String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+        return paymentServiceClientFactory.build("test", url, Retryer.NEVER_RETRY, new Request.Options(500, 500));
+    }
+}
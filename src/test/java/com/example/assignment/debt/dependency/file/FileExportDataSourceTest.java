@@ -0,0 +1,181 @@
+package com.example.assignment.debt.dependency.file;
+
+import com.example.assignment.debt.dependency.PaymentSourceProperties;
+import com.example.assignment.debt.dependency.model.Debt;
+import com.example.assignment.debt.dependency.model.InstallmentFrequency;
+import com.example.assignment.debt.dependency.model.Payment;
+import com.example.assignment.debt.dependency.model.PaymentPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileExportDataSourceTest {
+
+    private static final int PARALLELISM = 4;
+
+    @TempDir
+    Path exportDirectory;
+
+    private final ThreadPoolExecutor parser = new ThreadPoolExecutor(PARALLELISM, PARALLELISM, 0, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>());
+
+    @AfterEach
+    void shutdownParser() {
+        parser.shutdownNow();
+    }
+
+    /**
+     * NDJSON exports read the same as the PaymentService API responses, with fields in any order, unknown and
+     * nested fields ignored, and missing or null fields read as null.
+     * @throws IOException
+     */
+    @Test
+    void testReadNdjsonExports() throws IOException {
+        Path debtsFile = write("debts.ndjson",
+                "{\"id\":0,\"amount\":123.46}\n"
+                        + "\n"
+                        + "{\"amount\": 4920.34, \"id\": 2, \"tags\": {\"region\": [\"us\", \"}\"]}}\r\n"
+                        + "{\"id\":3,\"amount\":null}");
+        Path paymentPlansFile = write("payment_plans.ndjson",
+                "{\"id\":0,\"debt_id\":0,\"amount_to_pay\":82.0,\"installment_frequency\":\"WEEKLY\","
+                        + "\"installment_amount\":20.75,\"start_date\":\"2020-08-01\"}\n");
+        FileExportDataSource dataSource = new FileExportDataSource(debtsFile, paymentPlansFile, null,
+                new ExportFileReader(PARALLELISM, parser));
+
+        //Verification
+        assertEquals(Arrays.asList(
+                Debt.builder().id(0).amount(new BigDecimal("123.46")).build(),
+                Debt.builder().id(2).amount(new BigDecimal("4920.34")).build(),
+                Debt.builder().id(3).build()), dataSource.getAllDebts());
+        assertEquals(Arrays.asList(PaymentPlan.builder()
+                .id(0)
+                .debtId(0)
+                .amountToPay(new BigDecimal("82.0"))
+                .installmentAmount(new BigDecimal("20.75"))
+                .installmentFrequency(InstallmentFrequency.WEEKLY.name())
+                .startDate(LocalDate.of(2020, 8, 1))
+                .build()), dataSource.getAllPaymentPlans());
+    }
+
+    /**
+     * CSV exports split in many chunks are read in file order, whatever the column order and quoting.
+     * @throws IOException
+     */
+    @Test
+    void testReadCsvExportInChunks() throws IOException {
+        List<Payment> expectedPayments = new ArrayList<>();
+        Path paymentsFile = writePaymentsCsv(expectedPayments);
+        FileExportDataSource dataSource = new FileExportDataSource(null, null, paymentsFile,
+                new ExportFileReader(8, 64, 1 << 20, parser));
+
+        //Verification
+        assertEquals(expectedPayments, dataSource.getAllPayments());
+    }
+
+    /**
+     * Streamed payments come in file order while only the chunks just ahead of the consumer have been parsed.
+     * @throws IOException
+     */
+    @Test
+    void testStreamPaymentsParsesChunksAhead() throws IOException {
+        List<Payment> expectedPayments = new ArrayList<>();
+        Path paymentsFile = writePaymentsCsv(expectedPayments);
+        FileExportDataSource dataSource = new FileExportDataSource(null, null, paymentsFile,
+                new ExportFileReader(PARALLELISM, 64, 256, parser));
+
+        List<Payment> payments = new ArrayList<>();
+        long chunksSubmittedForFirstPayment;
+        try (Stream<Payment> paymentStream = dataSource.streamAllPayments()) {
+            Iterator<Payment> paymentIterator = paymentStream.iterator();
+            payments.add(paymentIterator.next());
+            chunksSubmittedForFirstPayment = parser.getTaskCount();
+            paymentIterator.forEachRemaining(payments::add);
+        }
+
+        //Verification
+        assertEquals(PARALLELISM + 1, chunksSubmittedForFirstPayment);
+        assertTrue(parser.getTaskCount() > 2 * PARALLELISM);
+        assertEquals(expectedPayments, payments);
+    }
+
+    /**
+     * A CSV export without a column of the mapped fields is rejected with the file and the missing columns.
+     * @throws IOException
+     */
+    @Test
+    void testCsvExportWithMissingColumnsRejected() throws IOException {
+        Path paymentsFile = write("payments.csv", "payment_plan_id,amount\n0,10.5\n");
+        FileExportDataSource dataSource = new FileExportDataSource(null, null, paymentsFile,
+                new ExportFileReader(PARALLELISM, parser));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                dataSource::getAllPayments);
+
+        //Verification
+        assertTrue(exception.getMessage().contains(paymentsFile.toString()));
+        assertTrue(exception.getMessage().contains("Missing columns [date]"));
+    }
+
+    private Path writePaymentsCsv(List<Payment> expectedPayments) throws IOException {
+        StringBuilder csv = new StringBuilder("date,\"payment_plan_id\",amount\n");
+        for (int i = 0; i < 500; i++) {
+            LocalDate date = LocalDate.of(2020, 8, 1).plusDays(i);
+            String amount = i % 7 == 0 ? "1.5E2" : (i % 2 == 0 ? "-" : "") + i + "." + (i % 100);
+            csv.append(i % 3 == 0 ? "\"" + date + "\"" : date).append(',').append(i % 10).append(',')
+                    .append(amount).append(i % 5 == 0 ? "\r\n" : "\n");
+            expectedPayments.add(Payment.builder()
+                    .amount(new BigDecimal(amount))
+                    .paymentPlanId(i % 10)
+                    .date(date).build());
+        }
+        return write("payments.csv", csv.toString());
+    }
+
+    /**
+     * The factory reads the export files named by the source, and rejects a source missing one of them.
+     * @throws IOException
+     */
+    @Test
+    void testFactoryBuildsSourceFromProperties() throws IOException {
+        PaymentSourceProperties.Source source = new PaymentSourceProperties.Source();
+        source.setName("default");
+        source.setType(PaymentSourceProperties.SourceType.FILE);
+        source.setDebtsFile(write("debts.ndjson", "{\"id\":0,\"amount\":123.46}\n").toString());
+        source.setPaymentPlansFile(write("payment_plans.ndjson", "").toString());
+        FileExportDataSourceFactory factory = new FileExportDataSourceFactory();
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> factory.build(source, "paymentService"));
+        source.setPaymentsFile(write("payments.csv", "date,payment_plan_id,amount\n").toString());
+        FileExportDataSource dataSource = factory.build(source, "paymentService");
+
+        //Verification
+        assertEquals("paymentService.paymentsFile is required for default", exception.getMessage());
+        assertEquals(Arrays.asList(Debt.builder().id(0).amount(new BigDecimal("123.46")).build()),
+                dataSource.getAllDebts());
+        factory.destroy();
+    }
+
+    private Path write(String fileName, String content) throws IOException {
+        return Files.write(exportDirectory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.assignment.debt.jfr;
+
+import com.example.assignment.debt.DebtService;
+import com.example.assignment.debt.dependency.PaymentServiceClient;
+import com.example.assignment.debt.dependency.PaymentServiceDataSource;
+import com.example.assignment.debt.dependency.PaymentSourceRegistry;
+import com.example.assignment.debt.dependency.model.Debt;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshRecorderTest {
+
+    private static final long LATENCY_THRESHOLD_MILLIS = 50;
+
+    @Mock
+    private PaymentServiceClient paymentServiceClient;
+
+    @Mock
+    private PaymentSourceRegistry paymentSourceRegistry;
+
+    @TempDir
+    Path dumpDirectory;
+
+    private RefreshRecorder refreshRecorder;
+
+    @AfterEach
+    void closeRecording() {
+        if (refreshRecorder != null) {
+            refreshRecorder.destroy();
+        }
+    }
+
+    /**
+     * A refresh slower than the latency threshold is dumped, and the dump holds the events of the refresh and of
+     * its stages, all carrying its refresh id.
+     * @throws Exception
+     */
+    @Test
+    void testSlowRefreshDumped() throws Exception {
+        refreshRecorder = new RefreshRecorder(true, 10, LATENCY_THRESHOLD_MILLIS, false, 64 << 20,
+                dumpDirectory.toString());
+        refreshRecorder.afterPropertiesSet();
+        DebtService debtService = new DebtService(new PaymentServiceDataSource(paymentServiceClient),
+                paymentSourceRegistry, refreshRecorder);
+        Mockito.when(paymentServiceClient.getAllDebts()).thenAnswer(invocation -> {
+            Thread.sleep(2 * LATENCY_THRESHOLD_MILLIS);
+            return Collections.singletonList(Debt.builder().id(1).amount(BigDecimal.TEN).build());
+        });
+
+        debtService.getAllDebts();
+
+        //Verification
+        Path dumpFile = dumpDirectory.resolve("refresh-1-slow.jfr");
+        assertTrue(Files.exists(dumpFile));
+        Set<String> eventNames = new HashSet<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dumpFile)) {
+            String eventName = event.getEventType().getName();
+            if (eventName.startsWith("com.example.assignment.")) {
+                assertEquals(1, event.getLong("refreshId"));
+                eventNames.add(eventName);
+            }
+        }
+        assertTrue(eventNames.contains("com.example.assignment.Refresh"));
+        assertTrue(eventNames.contains("com.example.assignment.PaymentServiceCall"));
+        assertTrue(eventNames.contains("com.example.assignment.JoinBuild"));
+    }
+}